@@ -0,0 +1,47 @@
+package com.guille.songoku;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+public class ByteArrayPool {
+    // Keeps released frame buffers around so every frame doesn't allocate new arrays
+
+    private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+    private final int maxPooled;
+
+    private int allocated = 0;
+
+    public ByteArrayPool(int maxPooled) {
+        if (maxPooled <= 0) {
+            throw new IllegalArgumentException("maxPooled must be positive: " + maxPooled);
+        }
+        this.maxPooled = maxPooled;
+    }
+
+    // Returns an array of exactly the given length, its content is left over from its last use
+    public synchronized byte[] acquire(int length) {
+        Iterator<byte[]> it = free.iterator();
+        while (it.hasNext()) {
+            byte[] array = it.next();
+            if (array.length == length) {
+                it.remove();
+                return array;
+            }
+        }
+        allocated++;
+        return new byte[length];
+    }
+
+    public synchronized void release(byte[] array) {
+        if (free.size() == maxPooled) {
+            // Drop the array released longest ago, so sizes nobody asks for anymore age out
+            free.pollLast();
+        }
+        free.push(array);
+    }
+
+    // Number of arrays allocated since creation, stays constant once the pool is warm
+    public synchronized int getAllocated() {
+        return allocated;
+    }
+}
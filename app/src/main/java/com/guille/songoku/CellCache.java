@@ -0,0 +1,97 @@
+package com.guille.songoku;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CellCache {
+    // Remembers the last classification of every cell together with a fingerprint of its image.
+    // If a cell looks (almost) the same as in the last frame, the classifier doesn't need to run again.
+    // The fingerprint is 64 bits, one per pixel of the number scaled down to 8x8
+
+    public static final int DEFAULT_MAX_DISTANCE = 6;
+
+    private final int cells;
+    private final long[] fingerprints;
+    private final Result[] results;
+
+    // Fingerprints differing in at most this many bits count as the same image
+    private volatile int maxDistance = DEFAULT_MAX_DISTANCE;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    public CellCache(int cells) {
+        this.cells = cells;
+        fingerprints = new long[cells];
+        results = new Result[cells];
+    }
+
+    public void setMaxDistance(int distance) {
+        if (distance < 0 || distance > 64) {
+            throw new IllegalArgumentException("Distance must be between 0 and 64: " + distance);
+        }
+        maxDistance = distance;
+    }
+
+    // Returns the stored result if the cell had a similar fingerprint last time, null otherwise
+    public Result lookup(int cell, long fingerprint) {
+        lookups.incrementAndGet();
+        Result result = results[cell];
+        if (result != null && Long.bitCount(fingerprints[cell] ^ fingerprint) <= maxDistance) {
+            hits.incrementAndGet();
+            return result;
+        }
+        return null;
+    }
+
+    public void store(int cell, long fingerprint, Result result) {
+        fingerprints[cell] = fingerprint;
+        results[cell] = result;
+    }
+
+    // The cell is empty now, when a number shows up it has to be classified
+    public void invalidate(int cell) {
+        results[cell] = null;
+    }
+
+    public void clear() {
+        for (int cell = 0; cell < cells; cell++) {
+            results[cell] = null;
+        }
+    }
+
+    // Cells that asked the cache
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    // Cells whose last result was reused, each one is a classifier run skipped
+    public long getHits() {
+        return hits.get();
+    }
+
+    public double getHitRate() {
+        long count = lookups.get();
+        return count == 0 ? 0 : (double) hits.get() / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cell cache: %d lookups, %d inferences skipped, hit rate %.1f%%",
+                getLookups(), getHits(), 100 * getHitRate());
+    }
+
+    // Turns a number image scaled down to 8x8 (64 gray values, row by row) into a fingerprint.
+    // Dark pixels, the ink of the number, are the set bits
+    public static long fingerprint(byte[] pixels) {
+        if (pixels.length != 64) {
+            throw new IllegalArgumentException("Need 64 pixels: " + pixels.length);
+        }
+        long bits = 0;
+        for (int i = 0; i < 64; i++) {
+            if ((pixels[i] & 0xFF) < 128) {
+                bits |= 1L << i;
+            }
+        }
+        return bits;
+    }
+}
@@ -2,8 +2,6 @@ package com.guille.songoku;
 
 import android.app.Activity;
 import android.content.res.AssetFileDescriptor;
-import android.graphics.Bitmap;
-import android.os.SystemClock;
 
 import org.tensorflow.lite.Interpreter;
 
@@ -20,38 +18,84 @@ public class Classifier {
 
     private static final String MODEL_NAME = "36000_numbers.tflite";
 
-    private static final int BATCH_SIZE = 1;
+    // A sudoku never has more numbers than cells
+    public static final int MAX_BATCH_SIZE = 81;
     public static final int IMG_HEIGHT = 28;
     public static final int IMG_WIDTH = 28;
     private static final int NUM_CHANNEL = 1;
     private static final int NUM_CLASSES = 10;
 
-    private final Interpreter interpreter;
+    private static final int IMG_FLOATS = IMG_HEIGHT * IMG_WIDTH * NUM_CHANNEL;
+
+    private final InferenceEngine engine;
     private final ByteBuffer imageData;
-    private final int[] imagePixels = new int[IMG_HEIGHT * IMG_WIDTH];
-    private final float[][] mResult = new float[1][NUM_CLASSES];
+
+    // Batch size the engine input is sized for at the moment
+    private int batchSize;
+    private final int[] inputShape;
+
+    // One input view and output array per batch size, made the first time that size is needed.
+    // TFLite wants the capacity of an input buffer to match the tensor exactly
+    private final ByteBuffer[] inputs = new ByteBuffer[MAX_BATCH_SIZE + 1];
+    private final float[][][] results = new float[MAX_BATCH_SIZE + 1][][];
 
     public Classifier(Activity activity) throws IOException {
-        Interpreter.Options options = new Interpreter.Options();
-        interpreter = new Interpreter(loadModelFile(activity), options);
-        imageData = ByteBuffer.allocateDirect(
-                4 * BATCH_SIZE * IMG_HEIGHT * IMG_WIDTH * NUM_CHANNEL);
+        this(new TfLiteEngine(new Interpreter(loadModelFile(activity), new Interpreter.Options())));
+    }
+
+    public Classifier(InferenceEngine engine) {
+        this.engine = engine;
+        inputShape = engine.getInputShape().clone();
+        batchSize = inputShape[0];
+        imageData = ByteBuffer.allocateDirect(4 * MAX_BATCH_SIZE * IMG_FLOATS);
         imageData.order(ByteOrder.nativeOrder());
     }
 
-    public Result classify(Bitmap bitmap) {
-        convertBitmapToByteBuffer(bitmap);
-        long startTime = SystemClock.uptimeMillis();
+    // Classifies the first count images in one run of the model.
+    // Each image is IMG_HEIGHT x IMG_WIDTH gray values, row by row, dark numbers on white
+    public Result[] classify(byte[][] images, int count) {
+        if (count < 0 || count > MAX_BATCH_SIZE || count > images.length) {
+            throw new IllegalArgumentException("Illegal batch size: " + count);
+        }
+        Result[] batch = new Result[count];
+        if (count == 0) {
+            return batch;
+        }
 
-        interpreter.run(imageData, mResult);
+        convertImagesToByteBuffer(images, count);
 
-        long endTime = SystemClock.uptimeMillis();
-        long timeCost = endTime - startTime;
+        if (count != batchSize) {
+            inputShape[0] = count;
+            engine.resizeInput(inputShape);
+            batchSize = count;
+        }
+        ByteBuffer input = inputs[count];
+        float[][] output = results[count];
+        if (input == null) {
+            imageData.clear();
+            imageData.limit(4 * count * IMG_FLOATS);
+            input = imageData.slice().order(ByteOrder.nativeOrder());
+            inputs[count] = input;
+            output = new float[count][NUM_CLASSES];
+            results[count] = output;
+        }
+        input.rewind();
 
-        return new Result(mResult[0], timeCost);
+        long startTime = System.nanoTime();
+
+        engine.run(input, output);
+
+        long endTime = System.nanoTime();
+        // The run is shared, so is its time
+        long timeCost = (endTime - startTime) / 1_000_000;
+
+        for (int i = 0; i < count; i++) {
+            batch[i] = new Result(output[i], timeCost);
+        }
+        return batch;
     }
 
-    private MappedByteBuffer loadModelFile(Activity activity) throws IOException {
+    private static MappedByteBuffer loadModelFile(Activity activity) throws IOException {
         AssetFileDescriptor fileDescriptor = activity.getAssets().openFd(MODEL_NAME);
         FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
         FileChannel fileChannel = inputStream.getChannel();
@@ -60,27 +104,21 @@ public class Classifier {
         return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
     }
 
-    private void convertBitmapToByteBuffer(Bitmap bitmap) {
-        if (imageData == null) {
-            return;
-        }
-        imageData.rewind();
-
-        bitmap.getPixels(imagePixels, 0, bitmap.getWidth(), 0, 0,
-                bitmap.getWidth(), bitmap.getHeight());
-
-        int pixel = 0;
-        for (int i = 0; i < IMG_WIDTH; ++i) {
-            for (int j = 0; j < IMG_HEIGHT; ++j) {
-                int value = imagePixels[pixel++];
-                imageData.putFloat(convertPixel(value));
+    private void convertImagesToByteBuffer(byte[][] images, int count) {
+        imageData.clear();
+        for (int n = 0; n < count; n++) {
+            byte[] pixels = images[n];
+            if (pixels.length != IMG_FLOATS) {
+                throw new IllegalArgumentException("Image " + n + " has " + pixels.length + " pixels");
+            }
+            for (byte pixel : pixels) {
+                imageData.putFloat(convertPixel(pixel & 0xFF));
             }
         }
     }
 
-    private static float convertPixel(int color) {
-        return (255 - (((color >> 16) & 0xFF) * 0.299f
-                + ((color >> 8) & 0xFF) * 0.587f
-                + (color & 0xFF) * 0.114f)) / 255.0f;
+    private static float convertPixel(int gray) {
+        // Same as the luminance of a gray pixel, inverted so the number is 1 and the paper 0
+        return (255 - gray) / 255.0f;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package com.guille.songoku;
+
+import org.opencv.core.Mat;
+
+public class Frame {
+    // Everything one camera frame carries from stage to stage
+
+    // Options at the time the frame was taken
+    public final boolean drawBorders;
+    public final boolean manualBorders;
+    public final double borderExt;
+    public final double borderInt;
+
+    // Color frame, only used for the overlay, and its luminance
+    public final Mat imgColor;
+    public final Mat imgGray;
+
+    // Filled in by the stages, stay null if there's no sudoku in the frame
+    public TransformedImage transImg;
+    public Mat imgOverlay;
+    public byte[][] sudokuArray;
+    public byte[][] sudokuSolvedArray;
+
+    public Frame(Mat imgColor, Mat imgGray,
+                 boolean drawBorders, boolean manualBorders, double borderExt, double borderInt) {
+        this.imgColor = imgColor;
+        this.imgGray = imgGray;
+        this.drawBorders = drawBorders;
+        this.manualBorders = manualBorders;
+        this.borderExt = borderExt;
+        this.borderInt = borderInt;
+    }
+
+    // Frees the native memory right away instead of waiting for the GC
+    public void release() {
+        imgColor.release();
+        imgGray.release();
+        if (transImg != null && transImg.imgSudoku != null) {
+            transImg.imgSudoku.release();
+        }
+        if (imgOverlay != null) {
+            imgOverlay.release();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.guille.songoku;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class FramePipeline<T> {
+    // Runs frames through a chain of stages, every stage on its own thread.
+    // Between two stages there is a LatestSlot, so a stage never waits for a slower one
+    // further down: while frame N is being recognised, frame N+1 can already be detected.
+    // Frames a stage was too slow for are handed to the drop handler.
+    // Whatever a stage throws is counted and given to the error handler, rate limited per stage,
+    // and the worker goes on with the next frame.
+    // Nothing in here knows about Android or OpenCV, any frame type can be run through it.
+
+    public interface Stage<T> {
+        void process(T frame) throws Exception;
+    }
+
+    public interface Source<T> {
+        // Returns the next frame, or null if there is none
+        T acquire() throws Exception;
+    }
+
+    public interface ErrorHandler {
+        // stopped is true if the worker of the stage ended, no frame gets past it from then on
+        void onError(String stage, Throwable error, boolean stopped);
+    }
+
+    // A stage failing on every frame is reported at most this often
+    private static final long REPORT_INTERVAL_NANOS = 5_000_000_000L;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Stage<T>> stages = new ArrayList<>();
+    private final List<StageStats> stats = new ArrayList<>();
+    private final StageStats acquireStats = new StageStats("acquire");
+
+    private final List<LatestSlot<T>> slots = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private Stage<T> dropHandler = frame -> {};
+    private ErrorHandler errorHandler = (stage, error, stopped) -> error.printStackTrace();
+
+    private boolean started = false;
+
+    // Appends a stage, the last one added usually hands the frame on to the display
+    public FramePipeline<T> addStage(String name, Stage<T> stage) {
+        if (started) {
+            throw new IllegalStateException("Pipeline already started");
+        }
+        names.add(name);
+        stages.add(stage);
+        stats.add(new StageStats(name));
+        slots.add(new LatestSlot<>());
+        return this;
+    }
+
+    // Called with every frame that won't reach the end, to give back its resources
+    public void setDropHandler(Stage<T> handler) {
+        dropHandler = handler;
+    }
+
+    // Called from the worker threads when a stage throws, set it before start()
+    public void setErrorHandler(ErrorHandler handler) {
+        errorHandler = handler;
+    }
+
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Pipeline already started");
+        }
+        if (stages.isEmpty()) {
+            throw new IllegalStateException("Pipeline has no stages");
+        }
+        started = true;
+
+        for (int i = 0; i < stages.size(); i++) {
+            final int index = i;
+            Thread worker = new Thread(() -> work(index), "Pipeline-" + names.get(i));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    // Runs the source on the calling thread and feeds its frame to the first stage.
+    // All stages have to be added before the first call
+    public void acquire(Source<T> source) {
+        long start = System.nanoTime();
+        T frame;
+        try {
+            frame = source.acquire();
+        } catch (Throwable e) {
+            acquireStats.recordFailed();
+            report(acquireStats, e);
+            return;
+        }
+        if (frame == null) {
+            return;
+        }
+        acquireStats.recordProcessed(System.nanoTime() - start);
+        handOver(frame, 0);
+    }
+
+    // Stops all workers, frames still waiting in between are dropped
+    public synchronized void stop() throws InterruptedException {
+        for (LatestSlot<T> slot : slots) {
+            drop(slot.close());
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        // Frames handed on from now on come straight back from the closed slots and get dropped
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    public StageStats getAcquireStats() {
+        return acquireStats;
+    }
+
+    // One entry per stage, in the order they were added
+    public List<StageStats> getStageStats() {
+        return Collections.unmodifiableList(stats);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(acquireStats.toString());
+        for (StageStats s : stats) {
+            sb.append('\n').append(s);
+        }
+        return sb.toString();
+    }
+
+    private void work(int index) {
+        Stage<T> stage = stages.get(index);
+        StageStats stageStats = stats.get(index);
+        LatestSlot<T> input = slots.get(index);
+        try {
+            while (true) {
+                T frame;
+                try {
+                    frame = input.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (frame == null) {
+                    // Closed
+                    return;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    stage.process(frame);
+                } catch (Throwable e) {
+                    // Errors too, OpenCV may throw UnsatisfiedLinkError or run out of memory.
+                    // One bad frame must not end the worker and freeze the preview
+                    stageStats.recordFailed();
+                    if (!(e instanceof InterruptedException)) {
+                        report(stageStats, e);
+                    }
+                    drop(frame);
+                    continue;
+                }
+                stageStats.recordProcessed(System.nanoTime() - start);
+
+                if (index + 1 < stages.size()) {
+                    handOver(frame, index + 1);
+                }
+            }
+        } catch (Throwable e) {
+            // Only the drop handler is left to throw here
+            notify(stageStats.getName(), e, true);
+        }
+    }
+
+    // The first failure of a stage is always reported, the following ones once per interval
+    private void report(StageStats stageStats, Throwable e) {
+        if (stageStats.shouldReport(System.nanoTime(), REPORT_INTERVAL_NANOS)) {
+            notify(stageStats.getName(), e, false);
+        }
+    }
+
+    private void notify(String stage, Throwable e, boolean stopped) {
+        try {
+            errorHandler.onError(stage, e, stopped);
+        } catch (Throwable ignored) {
+            // A broken handler must not end the worker
+        }
+    }
+
+    private void handOver(T frame, int index) {
+        T replaced = slots.get(index).offer(frame);
+        if (replaced != null) {
+            if (replaced != frame) {
+                // The stage didn't take the last frame in time
+                stats.get(index).recordDropped();
+            }
+            drop(replaced);
+        }
+    }
+
+    private void drop(T frame) {
+        if (frame == null) {
+            return;
+        }
+        try {
+            dropHandler.process(frame);
+        } catch (Exception e) {
+            // Nothing left to do with it
+        }
+    }
+}
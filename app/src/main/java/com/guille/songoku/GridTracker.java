@@ -0,0 +1,142 @@
+package com.guille.songoku;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+import org.opencv.imgproc.Imgproc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GridTracker {
+    // Detect stage that remembers where the sudoku was in the last frame.
+    // After a detection only a small region around the last position is searched
+    // (blur, open, threshold and contours all run on that region). The whole frame is
+    // only searched again when the sudoku isn't found there with the size it had before.
+    // Keeps state between frames, so only one thread may use an instance.
+    // The counters can be read from any thread.
+
+    // The search region grows by this share of the sudoku size on each side
+    private static final double MARGIN = 0.15;
+    // A tracked sudoku may change its area by this share from one frame to the next
+    private static final double MAX_AREA_CHANGE = 0.25;
+    // Full search once in a while anyway, in case we are following the wrong thing
+    private static final int MAX_TRACKED_FRAMES = 30;
+
+    // Bounding box and area of the sudoku in the last frame, lastBounds is null if there was none
+    private Rect lastBounds;
+    private double lastArea;
+    private int trackedInARow = 0;
+
+    private final AtomicLong trackedFrames = new AtomicLong();
+    private final AtomicLong fullSearches = new AtomicLong();
+    private final AtomicLong lostTracks = new AtomicLong();
+
+    public void detect(Frame frame) {
+        if (lastBounds != null && trackedInARow < MAX_TRACKED_FRAMES) {
+            TransformedImage transImg = searchRegion(frame.imgGray);
+            if (transImg != null) {
+                frame.transImg = transImg;
+                remember(transImg);
+                trackedInARow++;
+                trackedFrames.incrementAndGet();
+                return;
+            }
+            lostTracks.incrementAndGet();
+        }
+
+        // Not tracking or lost it, look at the whole frame
+        trackedInARow = 0;
+        fullSearches.incrementAndGet();
+        ImageProcessing.detect(frame);
+        if (frame.transImg != null) {
+            remember(frame.transImg);
+        } else {
+            lastBounds = null;
+        }
+    }
+
+    // Forget the last position, the next frame gets a full search
+    public void reset() {
+        lastBounds = null;
+    }
+
+    // Frames where the sudoku was found around its last position
+    public long getTrackedFrames() {
+        return trackedFrames.get();
+    }
+
+    // Frames that were searched as a whole
+    public long getFullSearches() {
+        return fullSearches.get();
+    }
+
+    // Frames where tracking didn't find the sudoku and a full search had to be done
+    public long getLostTracks() {
+        return lostTracks.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("tracker: %d tracked, %d full searches, %d lost",
+                getTrackedFrames(), getFullSearches(), getLostTracks());
+    }
+
+    private TransformedImage searchRegion(Mat imgGray) {
+        Rect region = grow(lastBounds, imgGray.width(), imgGray.height());
+        if (region.width <= 0 || region.height <= 0) {
+            // Frame size changed under us
+            return null;
+        }
+
+        Mat imgRegion = imgGray.submat(region);
+        MatOfPoint contourSudoku = ImageProcessing.findSudoku(imgRegion);
+        imgRegion.release();
+        if (contourSudoku.empty()) {
+            return null;
+        }
+
+        // If the biggest contour touches the border of the region, the sudoku moved out of it
+        Rect bounds = Imgproc.boundingRect(contourSudoku);
+        if (bounds.x <= 0 || bounds.y <= 0
+                || bounds.x + bounds.width >= region.width
+                || bounds.y + bounds.height >= region.height) {
+            return null;
+        }
+
+        // Back to frame coordinates, the warp is done on the whole frame
+        Point[] points = contourSudoku.toArray();
+        for (Point p : points) {
+            p.x += region.x;
+            p.y += region.y;
+        }
+        TransformedImage transImg = ImageProcessing.extractSudoku(imgGray, new MatOfPoint(points));
+        if (!transImg.isSudoku) {
+            return null;
+        }
+
+        // Something of a very different size is probably not our sudoku
+        double area = Imgproc.contourArea(transImg.contourApprox2f);
+        if (Math.abs(area - lastArea) > MAX_AREA_CHANGE * lastArea) {
+            transImg.imgSudoku.release();
+            return null;
+        }
+        return transImg;
+    }
+
+    private void remember(TransformedImage transImg) {
+        lastBounds = Imgproc.boundingRect(transImg.contourApprox2f);
+        lastArea = Imgproc.contourArea(transImg.contourApprox2f);
+    }
+
+    private static Rect grow(Rect r, int width, int height) {
+        int marginX = (int) Math.ceil(r.width * MARGIN);
+        int marginY = (int) Math.ceil(r.height * MARGIN);
+        int left = Math.max(0, r.x - marginX);
+        int top = Math.max(0, r.y - marginY);
+        int right = Math.min(width, r.x + r.width + marginX);
+        int bottom = Math.min(height, r.y + r.height + marginY);
+        return new Rect(left, top, right - left, bottom - top);
+    }
+}
@@ -18,75 +18,112 @@ import org.opencv.core.Core;
 
 
 class ImageProcessing {
-    public static Mat preprocess(Mat imgOriginal, Boolean drawBorders, Boolean manualBorders,
+    public static Mat preprocess(Mat imgOriginal, Mat imgGray, Boolean drawBorders, Boolean manualBorders,
                                  double borderExtSize, double borderIntSize) {
-        double borderInt;   // default value
-        double borderExt;   // default value
+        // imgOriginal is the color frame, only used for the final overlay
+        // imgGray is the luminance of the same frame, everything else works on it
+        // Runs all the stages one after the other on the calling thread
+        Frame frame = new Frame(imgOriginal, imgGray, drawBorders, manualBorders, borderExtSize, borderIntSize);
+        detect(frame);
+        recognize(frame);
+        solve(frame);
+        compose(frame);
+        return imgOriginal;
+    }
+
+    // STAGES
+    // Each one leaves the frame as it is if an earlier one found no sudoku
 
+    public static void detect(Frame frame) {
         // Find a sudoku in the image
-        MatOfPoint contourSudoku = findSudoku(imgOriginal);
+        MatOfPoint contourSudoku = findSudoku(frame.imgGray);
 
         if (!contourSudoku.empty()) {
             // If we have a possible sudoku, extract it into a new, warped image
-            TransformedImage transImg = extractSudoku(imgOriginal, contourSudoku);
+            TransformedImage transImg = extractSudoku(frame.imgGray, contourSudoku);
 
             if (transImg.isSudoku) {
-                Sudoku sudoku = Sudoku.getInstance();
-
-                boolean success;
+                frame.transImg = transImg;
+            }
+        }
+    }
 
-                // Checks for borders either manually or automatically
-                if (manualBorders) {
-                    borderIntSize = borderIntSize/50;
-                    borderExtSize = borderExtSize/50;
+    public static void recognize(Frame frame) {
+        if (frame.transImg == null) {
+            return;
+        }
+        TransformedImage transImg = frame.transImg;
+        Sudoku sudoku = Sudoku.getInstance();
 
-                    borderIntSize = (2.0 - borderIntSize)*100;
-                    borderExtSize = (2.0 - borderExtSize)*100;
+        // Transparent image of the size of the warped sudoku, the numbers and borders are drawn here
+        Mat imgOverlay = new Mat(transImg.imgSudoku.size(), CvType.CV_8UC4, new Scalar(0,0,0,0));
 
-                    borderInt = Math.ceil(transImg.imgSudoku.height() / borderIntSize);
-                    borderExt = Math.ceil(transImg.imgSudoku.height() / borderExtSize);
+        // Checks for borders either manually or automatically
+        boolean valid;
+        if (frame.manualBorders) {
+            double borderIntSize = frame.borderInt/50;
+            double borderExtSize = frame.borderExt/50;
 
-                    // Return if it's not a valid sudoku
-                    if (!sudoku.buildFromImageManual(transImg.imgSudoku, drawBorders, borderInt, borderExt))
-                        return imgOriginal;
-                } else {
-                    // Return if it's not a valid sudoku
-                    if (!sudoku.buildFromImageAuto(transImg.imgSudoku, drawBorders))
-                        return imgOriginal;
-                }
+            borderIntSize = (2.0 - borderIntSize)*100;
+            borderExtSize = (2.0 - borderExtSize)*100;
 
-                sudoku.solve();
-                sudoku.drawNumbers(transImg.imgSudoku);
+            double borderInt = Math.ceil(transImg.imgSudoku.height() / borderIntSize);
+            double borderExt = Math.ceil(transImg.imgSudoku.height() / borderExtSize);
 
-                // Get the inverse of the perspective matrix in order to paste the sudoku back
-                Mat invPerspective = transImg.perspectiveMatrix.inv();
+            valid = sudoku.buildFromImageManual(transImg.imgSudoku, imgOverlay, frame.drawBorders, borderInt, borderExt);
+        } else {
+            valid = sudoku.buildFromImageAuto(transImg.imgSudoku, imgOverlay, frame.drawBorders);
+        }
 
-                // Create a blank image of the same size as the original
-                Mat imgFloatingSudoku = new Mat(imgOriginal.width(), imgOriginal.height(),
-                        imgOriginal.type(), new Scalar(0,0,0,0));
+        // Leave the frame alone if it's not a valid sudoku
+        if (!valid) {
+            imgOverlay.release();
+            return;
+        }
+        frame.imgOverlay = imgOverlay;
+        frame.sudokuArray = sudoku.getSudokuArray();
+    }
 
-                // Paste the edited sudoku into the image
-                Imgproc.warpPerspective(transImg.imgSudoku, imgFloatingSudoku, invPerspective,
-                        new Size (imgOriginal.width(), imgOriginal.height()));
+    public static void solve(Frame frame) {
+        if (frame.sudokuArray == null) {
+            return;
+        }
+        frame.sudokuSolvedArray = Sudoku.getInstance().solve(frame.sudokuArray);
+    }
 
-                // Replace the blank parts with the original image
-                Mat mask = new Mat();
-                Core.inRange(imgFloatingSudoku, new Scalar(0,0,0,0), new Scalar(10,10,10,0), mask);
-                imgOriginal.copyTo(imgFloatingSudoku, mask);
+    public static void compose(Frame frame) {
+        if (frame.sudokuArray == null) {
+            return;
+        }
+        Mat imgOriginal = frame.imgColor;
 
-                return imgFloatingSudoku;
-            }
+        if (frame.sudokuSolvedArray != null) {
+            Sudoku.getInstance().drawNumbers(frame.imgOverlay, frame.sudokuArray, frame.sudokuSolvedArray);
         }
-        return imgOriginal;
+
+        // Get the inverse of the perspective matrix in order to paste the overlay back
+        Mat invPerspective = frame.transImg.perspectiveMatrix.inv();
+
+        // Warp the overlay into the perspective of the frame, outside it stays transparent
+        Mat imgFloatingOverlay = new Mat();
+        Imgproc.warpPerspective(frame.imgOverlay, imgFloatingOverlay, invPerspective,
+                new Size(imgOriginal.width(), imgOriginal.height()));
+
+        // Copy the drawn parts (non zero alpha) onto the frame
+        Mat mask = new Mat();
+        Core.extractChannel(imgFloatingOverlay, mask, 3);
+        imgFloatingOverlay.copyTo(imgOriginal, mask);
+
+        imgFloatingOverlay.release();
+        mask.release();
     }
 
-    public static MatOfPoint findSudoku(Mat imgOriginal) {
-        // Black and white
-        Mat imgEdges = new Mat();
-        Imgproc.cvtColor(imgOriginal, imgEdges, Imgproc.COLOR_RGB2GRAY);
+    // DETECTION
 
+    public static MatOfPoint findSudoku(Mat imgGray) {
         // Blur
-        Imgproc.GaussianBlur(imgEdges, imgEdges, new Size(7, 7), 0);
+        Mat imgEdges = new Mat();
+        Imgproc.GaussianBlur(imgGray, imgEdges, new Size(7, 7), 0);
 
         // Open
         Mat kernel = Imgproc.getStructuringElement(0, new Size(3, 3));
@@ -171,7 +208,7 @@ class ImageProcessing {
         // Perspective transform the original image into the new one
         Mat perspective = Imgproc.getPerspectiveTransform(srcCorners, dstCorners);
 
-        Mat transformedImage = imgOriginal.clone();
+        Mat transformedImage = new Mat();
         Imgproc.warpPerspective(imgOriginal, transformedImage, perspective, new Size(dimension,dimension));
 
         // We now have our transformedImage
@@ -0,0 +1,15 @@
+package com.guille.songoku;
+
+import java.nio.ByteBuffer;
+
+public interface InferenceEngine {
+    // What Classifier needs from the TFLite interpreter, so a stand-in can replace it off-device
+
+    // Shape of the input tensor, the first dimension is the batch size
+    int[] getInputShape();
+
+    void resizeInput(int[] shape);
+
+    // input holds the float pixels of all images, output gets one row of class probabilities per image
+    void run(ByteBuffer input, float[][] output);
+}
@@ -0,0 +1,40 @@
+package com.guille.songoku;
+
+class LatestSlot<T> {
+    // Hand-off between two pipeline stages that holds at most one item.
+    // A new item replaces one nobody took yet, so a slow consumer always gets the latest frame.
+
+    private T item;
+    private boolean closed = false;
+
+    // Puts an item in the slot, returns the item it replaced (or null).
+    // After closing the offered item itself is returned, it was never taken
+    public synchronized T offer(T newItem) {
+        if (closed) {
+            return newItem;
+        }
+        T old = item;
+        item = newItem;
+        notifyAll();
+        return old;
+    }
+
+    // Waits for an item, returns null once the slot is closed
+    public synchronized T take() throws InterruptedException {
+        while (item == null && !closed) {
+            wait();
+        }
+        T taken = item;
+        item = null;
+        return taken;
+    }
+
+    // Wakes up the consumer for good, returns the item left in the slot (or null)
+    public synchronized T close() {
+        closed = true;
+        notifyAll();
+        T left = item;
+        item = null;
+        return left;
+    }
+}
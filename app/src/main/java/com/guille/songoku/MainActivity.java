@@ -11,16 +11,10 @@ import androidx.core.content.ContextCompat;
 import android.content.pm.PackageManager;
 
 import android.media.Image;
-import java.nio.ByteBuffer;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 
-import android.graphics.YuvImage;
 import android.graphics.ImageFormat;
-import java.io.ByteArrayOutputStream;
-import android.graphics.Rect;
 
-import android.graphics.Matrix;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
@@ -59,6 +53,14 @@ public class MainActivity extends AppCompatActivity {
 
     private Classifier classifier;
 
+    // Camera frame conversion, buffers are reused between frames
+    private final YuvConverter yuvConverter = new YuvConverter(new ByteArrayPool(2));
+
+    // Frame processing, every stage runs on its own thread
+    private final FramePipeline<Frame> pipeline = new FramePipeline<>();
+    private final GridTracker gridTracker = new GridTracker();
+    private long displayedFrames = 0;
+
     private Size screen;
     private Rational aspectRatio;
 
@@ -86,6 +88,9 @@ public class MainActivity extends AppCompatActivity {
         Sudoku sudoku = Sudoku.getInstance();
         sudoku.setClassifier(classifier);
 
+        setPipeline();
+        pipeline.start();
+
         // Check for permissions/request them
         if (allPermissionsGranted()) {
             startCamera();
@@ -159,53 +164,75 @@ public class MainActivity extends AppCompatActivity {
                 (imageProxy, rotationDegrees) -> {
                     //Analyzing live camera feed begins.
 
-                    // Transform Image to Bitmap
-                    final Image cameraImage = imageProxy.getImage();
-                    final Bitmap bitmap = imageToBitmap(cameraImage, rotationDegrees);
-
-                    if (bitmap == null) return;
-
-                    Mat mat = new Mat();
-                    Utils.bitmapToMat(bitmap, mat);
-
-                    // Sends image to ImageProcessing class and returns final image
-                    mat = ImageProcessing.preprocess(mat, drawBorders, manualBorders, borderExt, borderInt);
-
-                    // Write final image
-                    Utils.matToBitmap(mat, bitmap);
-                    runOnUiThread(() -> imageView.setImageBitmap(bitmap));
-
+                    // Transform Image to Mat, the pipeline takes it from here
+                    pipeline.acquire(() -> {
+                        final Image cameraImage = imageProxy.getImage();
+                        if (cameraImage == null) return null;
+
+                        Frame frame = new Frame(new Mat(), new Mat(), drawBorders, manualBorders, borderExt, borderInt);
+                        try {
+                            imageToMat(cameraImage, rotationDegrees, frame.imgColor, frame.imgGray);
+                        } catch (Throwable e) {
+                            // The pipeline never sees this frame, so nobody else frees its Mats
+                            frame.release();
+                            throw e;
+                        }
+                        return frame;
+                    });
                 });
         return imageAnalysis;
     }
 
-    public Bitmap imageToBitmap(Image image, int rotationDegrees) {
-        assert (image.getFormat() == ImageFormat.NV21);
-
-        // NV21 is a plane of 8 bit Y values followed by interleaved  Cb Cr
-        ByteBuffer ib = ByteBuffer.allocate(image.getHeight() * image.getWidth() * 2);
+    private void setPipeline() {
+        // acquire (camera thread) -> detect/warp -> recognize -> solve -> compose
+        pipeline.addStage("detect", gridTracker::detect)
+                .addStage("recognize", ImageProcessing::recognize)
+                .addStage("solve", ImageProcessing::solve)
+                .addStage("compose", frame -> {
+                    ImageProcessing.compose(frame);
+
+                    // Write final image, a new Bitmap because the UI thread may still draw the last one
+                    final Bitmap bitmap = Bitmap.createBitmap(frame.imgColor.cols(), frame.imgColor.rows(),
+                            Bitmap.Config.ARGB_8888);
+                    Utils.matToBitmap(frame.imgColor, bitmap);
+                    frame.release();
+                    runOnUiThread(() -> imageView.setImageBitmap(bitmap));
 
-        ByteBuffer y = image.getPlanes()[0].getBuffer();
-        ByteBuffer cr = image.getPlanes()[1].getBuffer();
-        ByteBuffer cb = image.getPlanes()[2].getBuffer();
-        ib.put(y);
-        ib.put(cb);
-        ib.put(cr);
+                    if (++displayedFrames % 100 == 0) {
+                        Log.d("pipeline", pipeline.toString() + "\n" + gridTracker
+                                + "\n" + Sudoku.getInstance().getCellCache());
+                    }
+                });
 
-        YuvImage yuvImage = new YuvImage(ib.array(),
-                ImageFormat.NV21, image.getWidth(), image.getHeight(), null);
+        // Frames that were overtaken by newer ones
+        pipeline.setDropHandler(Frame::release);
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        yuvImage.compressToJpeg(new Rect(0, 0,
-                image.getWidth(), image.getHeight()), 100, out);
-        byte[] imageBytes = out.toByteArray();
-        Bitmap bm = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+        pipeline.setErrorHandler((stage, error, stopped) ->
+                Log.e("pipeline", stopped ? stage + " stopped" : stage + " failed", error));
+    }
 
-        // Rotation by 90º
-        Matrix matrix = new Matrix();
-        matrix.postRotate(90);
+    @Override
+    protected void onDestroy() {
+        try {
+            pipeline.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        super.onDestroy();
+    }
 
-        return Bitmap.createBitmap(bm, 0, 0, bm.getWidth(), bm.getHeight(), matrix, true);
+    public void imageToMat(Image image, int rotationDegrees, Mat dst, Mat dstGray) {
+        assert (image.getFormat() == ImageFormat.YUV_420_888);
+
+        // Planes are Y, U, V. U and V share their strides, their pixel stride is 2
+        // when the camera delivers them interleaved.
+        // The Y plane already is the luminance, no need to convert the color frame back to gray
+        Image.Plane[] planes = image.getPlanes();
+        yuvConverter.convert(
+                planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getWidth(), image.getHeight(), rotationDegrees, dst, dstGray);
     }
 
 //    PERMISSIONS
@@ -0,0 +1,81 @@
+package com.guille.songoku;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StageStats {
+    // Counters of one pipeline stage, written by its worker and read from any thread
+
+    private final String name;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong lastNanos = new AtomicLong();
+
+    // When the last failure was reported, only used by the thread running the stage
+    private boolean reported = false;
+    private long lastReportNanos;
+
+    public StageStats(String name) {
+        this.name = name;
+    }
+
+    void recordProcessed(long nanos) {
+        processed.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        lastNanos.set(nanos);
+    }
+
+    void recordDropped() {
+        dropped.incrementAndGet();
+    }
+
+    void recordFailed() {
+        failed.incrementAndGet();
+    }
+
+    // Whether a failure at nowNanos gets reported, the first one always does
+    boolean shouldReport(long nowNanos, long intervalNanos) {
+        if (reported && nowNanos - lastReportNanos < intervalNanos) {
+            return false;
+        }
+        reported = true;
+        lastReportNanos = nowNanos;
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Frames that went through the stage
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    // Frames replaced by a newer one before the stage could take them
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // Frames the stage threw an exception on
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public double getAverageMillis() {
+        long count = processed.get();
+        return count == 0 ? 0 : totalNanos.get() / 1e6 / count;
+    }
+
+    public double getLastMillis() {
+        return lastNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d processed, %d dropped, %d failed, avg %.2f ms",
+                name, getProcessed(), getDropped(), getFailed(), getAverageMillis());
+    }
+}
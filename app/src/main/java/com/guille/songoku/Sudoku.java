@@ -13,15 +13,13 @@ import org.opencv.core.Core;
 
 import java.util.List;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.nio.ByteBuffer;
 
 // For testing
 
 import org.opencv.core.CvType;
-import android.graphics.Bitmap;
-
-import org.opencv.android.Utils;
 import android.util.Log;
 
 // SUdoku solver
@@ -35,17 +33,37 @@ public class Sudoku {
     private Scalar colorBorder = new Scalar(0, 40, 0, 128);
     private Scalar colorNumber = new Scalar(0, 20, 128, 180);
 
-    // Arrays that contain the sudoku numbers
+    // Array that contains the recognized sudoku numbers
     private byte[][] sudokuArray = new byte[9][9];
-    private byte[][] sudokuSolvedArray = new byte[9][9];
 
-    // Map for already solved sudokus
-    private Map<byte[][], byte[][]> alreadySolved = new HashMap<>();
+    // Map for already solved sudokus, keyed by the 81 numbers of the riddle.
+    // Only the most recently used ones are kept, misread frames would grow it forever
+    private static final int MAX_SOLVED = 32;
+    private final Map<ByteBuffer, byte[][]> alreadySolved =
+            new LinkedHashMap<ByteBuffer, byte[][]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, byte[][]> eldest) {
+                    return size() > MAX_SOLVED;
+                }
+            };
 
     private Mat imgEdges = new Mat();
 
     private Classifier classifier;
 
+    // Cells that look like in the last frame reuse the last classification
+    private final CellCache cellCache = new CellCache(81);
+    private final Mat imgInk = new Mat();
+    private final Mat imgFingerprint = new Mat();
+    private final byte[] fingerprintPixels = new byte[64];
+
+    // Cells that need the classifier, all of them are classified in one go after the last cell
+    private final Mat imgResized = new Mat(Classifier.IMG_HEIGHT, Classifier.IMG_WIDTH, CvType.CV_8UC1);
+    private final byte[][] pendingImages = new byte[81][Classifier.IMG_HEIGHT * Classifier.IMG_WIDTH];
+    private final int[] pendingCells = new int[81];
+    private final long[] pendingFingerprints = new long[81];
+    private int pendingCount = 0;
+
     // Maximum time before giving up on a sudoku (ms)
     private final long maxTime = 100;
 
@@ -59,13 +77,13 @@ public class Sudoku {
     private Sudoku() {}
 
     // Main methods
-    public Boolean buildFromImageManual(Mat imgSudoku, Boolean drawBorders, double borderInt, double borderExt) {
+    // imgSudoku is the warped gray sudoku, borders are drawn on imgOverlay
+    public Boolean buildFromImageManual(Mat imgSudoku, Mat imgOverlay, Boolean drawBorders, double borderInt, double borderExt) {
+        // Nothing left over from a call that threw halfway
+        pendingCount = 0;
 //        imgEdges = new Mat(3,3);
-        // Black and white
-        Imgproc.cvtColor(imgSudoku, imgEdges, Imgproc.COLOR_RGB2GRAY);
-
         // Adaptive threshold
-        Imgproc.adaptiveThreshold(imgEdges, imgEdges, 255,
+        Imgproc.adaptiveThreshold(imgSudoku, imgEdges, 255,
                 Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY, 7, 9);
 
         // Grab images from every square (manual borders)
@@ -115,25 +133,27 @@ public class Sudoku {
                     guessNumber(imgSquare, i, j);
                 } catch (CvException e) {
                     Log.i("exception", "caught exception, not analyzing sudoku");
+                    pendingCount = 0;
                     return false;
                 }
             }
         }
+        classifyPending();
 
         if (drawBorders) {
-            drawBordersManual(imgSudoku, borderExt, borderInt);
+            drawBordersManual(imgOverlay, borderExt, borderInt);
         }
 
         return true;
 
     }
 
-    public Boolean buildFromImageAuto(Mat imgSudoku, Boolean drawBorders) {
-        // Black and white
-        Imgproc.cvtColor(imgSudoku, imgEdges, Imgproc.COLOR_RGB2GRAY);
-
+    // imgSudoku is the warped gray sudoku, borders are drawn on imgOverlay
+    public Boolean buildFromImageAuto(Mat imgSudoku, Mat imgOverlay, Boolean drawBorders) {
+        // Nothing left over from a call that threw halfway
+        pendingCount = 0;
         // For numbers
-        Imgproc.adaptiveThreshold(imgEdges, imgEdges, 255,
+        Imgproc.adaptiveThreshold(imgSudoku, imgEdges, 255,
                 Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY, 7, 9);
 
         // Go diagonally down right the sudoku
@@ -188,10 +208,10 @@ public class Sudoku {
             }
             // Drawing lines
             if (drawBorders) {
-                Imgproc.line(imgSudoku, new Point(0, top[i]), new Point(imgSudoku.width() - 1, top[i]), colorBorder, 1);
-                Imgproc.line(imgSudoku, new Point(0, bottom[i]), new Point(imgSudoku.width() - 1, bottom[i]), colorBorder, 1);
-                Imgproc.line(imgSudoku, new Point(left[i], 0), new Point(left[i], imgSudoku.height() - 1), colorBorder, 1);
-                Imgproc.line(imgSudoku, new Point(right[i], 0), new Point(right[i], imgSudoku.height() - 1), colorBorder, 1);
+                Imgproc.line(imgOverlay, new Point(0, top[i]), new Point(imgOverlay.width() - 1, top[i]), colorBorder, 1);
+                Imgproc.line(imgOverlay, new Point(0, bottom[i]), new Point(imgOverlay.width() - 1, bottom[i]), colorBorder, 1);
+                Imgproc.line(imgOverlay, new Point(left[i], 0), new Point(left[i], imgOverlay.height() - 1), colorBorder, 1);
+                Imgproc.line(imgOverlay, new Point(right[i], 0), new Point(right[i], imgOverlay.height() - 1), colorBorder, 1);
             }
         }
 
@@ -209,40 +229,79 @@ public class Sudoku {
                     guessNumber(imgSquare, i, j);
                 } catch (CvException e) {
                     e.printStackTrace();
+                    pendingCount = 0;
                     return false;
                 }
             }
         }
+        classifyPending();
         return true;
     }
 
-    public void solve() {
+    // Returns the solution of the riddle, or null if there is none.
+    // Only called from one thread at a time
+    public byte[][] solve(byte[][] riddleArray) {
+        byte[] key = new byte[81];
+        for (int i=0; i<9; i++) {
+            System.arraycopy(riddleArray[i], 0, key, i*9, 9);
+        }
+
         // Save solutions in a Map so we don't have to do them again
-        if (alreadySolved.containsValue(sudokuArray)) {
-            sudokuSolvedArray = alreadySolved.get(sudokuArray);
-        } else {
-            // Solving the sudoku
-            Riddle riddle = new GameMatrixFactory().newRiddle();
-            riddle.setAll(sudokuArray);
+        ByteBuffer riddleKey = ByteBuffer.wrap(key);
+        byte[][] solved = alreadySolved.get(riddleKey);
+        if (solved != null) {
+            return solved;
+        }
 
-            Solver solver = new Solver(riddle);
-            solver.setLimit(1);
-            List<GameMatrix> solutions = solver.solve(maxTime);
+        // Solving the sudoku
+        Riddle riddle = new GameMatrixFactory().newRiddle();
+        riddle.setAll(riddleArray);
 
-            if (!solutions.isEmpty()) {
-                sudokuSolvedArray = solutions.get(0).getArray();
-                alreadySolved.put(sudokuArray, sudokuSolvedArray);
-            }
+        Solver solver = new Solver(riddle);
+        solver.setLimit(1);
+        List<GameMatrix> solutions = solver.solve(maxTime);
+
+        if (solutions.isEmpty()) {
+            return null;
         }
+        solved = solutions.get(0).getArray();
+        alreadySolved.put(riddleKey, solved);
+        return solved;
+    }
+
+    // Copy of the numbers recognized by the last buildFromImage call, 0 for empty cells
+    public byte[][] getSudokuArray() {
+        byte[][] copy = new byte[9][];
+        for (int i=0; i<9; i++) {
+            copy[i] = sudokuArray[i].clone();
+        }
+        return copy;
     }
 
     private void guessNumber(Mat imgSquare, int i, int j) {
+        final int cell = i*9 + j;
         // Check how many non-blank pixels there are and assume if there is a number
         if (Core.countNonZero(imgSquare) < imgSquare.total()*0.95) {
+            // Skip the classifier if the cell looks like last frame.
+            // The fingerprint is taken from the box around the number, so it doesn't depend on
+            // where exactly the cell borders were found
+            Core.bitwise_not(imgSquare, imgInk);
+            Rect inkBox = Imgproc.boundingRect(imgInk);
+            Mat imgNumber = imgSquare.submat(inkBox);
+            Imgproc.resize(imgNumber, imgFingerprint, new Size(8, 8), 0, 0, Imgproc.INTER_AREA);
+            imgNumber.release();
+            imgFingerprint.get(0, 0, fingerprintPixels);
+            long fingerprint = CellCache.fingerprint(fingerprintPixels);
+
+            Result result = cellCache.lookup(cell, fingerprint);
+            if (result != null) {
+                sudokuArray[i][j] = (byte) result.getNumber();
+                return;
+            }
+
             // Resize to 28x28
-            Mat resizeImage = new Mat(28, 28, CvType.CV_32F);
             int interpolation = Imgproc.INTER_CUBIC;
-            Imgproc.resize(imgSquare, resizeImage, resizeImage.size(), 0, 0, interpolation);
+            Imgproc.resize(imgSquare, imgResized, imgResized.size(), 0, 0, interpolation);
 
             // TEST: Saving to files
 //            count++;
@@ -250,25 +309,41 @@ public class Sudoku {
 //            File path = new File(Environment.getExternalStorageDirectory() + "/Images/font5/" + Integer.toString(i) + "/");
 //            path.mkdirs();
 //            File file = new File(path, "square" + Integer.toString(count) + ".png");
-//            Imgcodecs.imwrite(file.toString(), resizeImage);
+//            Imgcodecs.imwrite(file.toString(), imgResized);
 //
 //            sudokuArray[i][j] = 0;
             // ENDTEST
 
-            // Mat to Bitmap
-            Bitmap bmp;
-            bmp = Bitmap.createBitmap(resizeImage.cols(), resizeImage.rows(), Bitmap.Config.ARGB_8888);
-            Utils.matToBitmap(resizeImage, bmp);
-
-            // Guess the number
-            Result result = classifier.classify(bmp);
-
-            sudokuArray[i][j] = (byte) result.getNumber();
+            // Guess the number later, together with the other cells
+            imgResized.get(0, 0, pendingImages[pendingCount]);
+            pendingCells[pendingCount] = cell;
+            pendingFingerprints[pendingCount] = fingerprint;
+            pendingCount++;
         } else {
+            cellCache.invalidate(cell);
             sudokuArray[i][j] = 0;
         }
     }
 
+    private void classifyPending() {
+        // One run of the classifier for all cells that weren't in the cache
+        try {
+            Result[] results = classifier.classify(pendingImages, pendingCount);
+            for (int n=0; n<pendingCount; n++) {
+                int cell = pendingCells[n];
+                cellCache.store(cell, pendingFingerprints[n], results[n]);
+                sudokuArray[cell / 9][cell % 9] = (byte) results[n].getNumber();
+            }
+        } finally {
+            pendingCount = 0;
+        }
+    }
+
+    // Hit and skipped inference counters, the distance threshold can be tuned here
+    public CellCache getCellCache() {
+        return cellCache;
+    }
+
     // Setters
     public void setClassifier(Classifier classer) {
         classifier = classer;
@@ -283,7 +358,7 @@ public class Sudoku {
     }
 
     // Drawing
-    public void drawNumbers(Mat imgSudoku) {
+    public void drawNumbers(Mat imgSudoku, byte[][] sudokuArray, byte[][] sudokuSolvedArray) {
         final double w = imgSudoku.width();
         final double h = imgSudoku.height();
         final double x = w/9;
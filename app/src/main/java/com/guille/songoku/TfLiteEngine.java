@@ -0,0 +1,28 @@
+package com.guille.songoku;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+
+public class TfLiteEngine implements InferenceEngine {
+    private final Interpreter interpreter;
+
+    public TfLiteEngine(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    @Override
+    public int[] getInputShape() {
+        return interpreter.getInputTensor(0).shape();
+    }
+
+    @Override
+    public void resizeInput(int[] shape) {
+        interpreter.resizeInput(0, shape);
+    }
+
+    @Override
+    public void run(ByteBuffer input, float[][] output) {
+        interpreter.run(input, output);
+    }
+}
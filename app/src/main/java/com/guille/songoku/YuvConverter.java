@@ -0,0 +1,69 @@
+package com.guille.songoku;
+
+import java.nio.ByteBuffer;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+public class YuvConverter {
+    // Turns the three planes of a YUV_420_888 camera frame into an RGBA Mat and a gray Mat.
+    // The planes are packed into a pooled I420 array by YuvPlanes, put into a reused Mat
+    // and converted by OpenCV. No android classes are used so it can be fed synthetic
+    // frames on desktop.
+
+    private final ByteArrayPool pool;
+    private final YuvPlanes planes = new YuvPlanes();
+
+    // Reused between frames, only reallocated by OpenCV if the frame size changes
+    private final Mat imgYuv = new Mat();
+    private final Mat imgRgba = new Mat();
+
+    public YuvConverter(ByteArrayPool pool) {
+        this.pool = pool;
+    }
+
+    // dstGray gets the Y plane, which already is the luminance the detection and the cell
+    // extraction work on
+    public void convert(ByteBuffer y, int yRowStride,
+                        ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                        int width, int height, int rotationDegrees, Mat dst, Mat dstGray) {
+        int rotation = YuvPlanes.normalizeRotation(rotationDegrees);
+        byte[] i420 = pool.acquire(YuvPlanes.i420Size(width, height));
+        try {
+            planes.packI420(y, yRowStride, u, v, uvRowStride, uvPixelStride, width, height, i420);
+
+            // I420 is one channel, the chroma planes hang below the Y plane
+            imgYuv.create(height + height / 2, width, CvType.CV_8UC1);
+            imgYuv.put(0, 0, i420);
+            // The Y plane is packed already, it's the top rows of imgYuv
+            Mat imgY = imgYuv.rowRange(0, height);
+            try {
+                if (rotation == 0) {
+                    Imgproc.cvtColor(imgYuv, dst, Imgproc.COLOR_YUV2RGBA_I420);
+                    imgY.copyTo(dstGray);
+                } else {
+                    Imgproc.cvtColor(imgYuv, imgRgba, Imgproc.COLOR_YUV2RGBA_I420);
+                    Core.rotate(imgRgba, dst, rotateCode(rotation));
+                    Core.rotate(imgY, dstGray, rotateCode(rotation));
+                }
+            } finally {
+                imgY.release();
+            }
+        } finally {
+            pool.release(i420);
+        }
+    }
+
+    private static int rotateCode(int rotation) {
+        switch (rotation) {
+            case 90:
+                return Core.ROTATE_90_CLOCKWISE;
+            case 180:
+                return Core.ROTATE_180;
+            default:
+                return Core.ROTATE_90_COUNTERCLOCKWISE;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.guille.songoku;
+
+import java.nio.ByteBuffer;
+
+public class YuvPlanes {
+    // Packs the planes of a YUV_420_888 camera frame into a byte array, respecting row and
+    // pixel strides. Knows nothing about OpenCV or android, so it can be tested on desktop.
+
+    // Row scratch for deinterleaving chroma planes with a pixel stride > 1
+    private byte[] rowBuffer = new byte[0];
+
+    // Bytes of an I420 frame: the full Y plane, then the quarter size U and V planes
+    public static int i420Size(int width, int height) {
+        if (width <= 0 || height <= 0 || (width & 1) != 0 || (height & 1) != 0) {
+            throw new IllegalArgumentException("Illegal frame size: " + width + "x" + height);
+        }
+        return width * height + 2 * (width / 2) * (height / 2);
+    }
+
+    // Maps any multiple of 90 degrees to 0, 90, 180 or 270
+    public static int normalizeRotation(int rotationDegrees) {
+        if (rotationDegrees % 90 != 0) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotationDegrees);
+        }
+        return (rotationDegrees % 360 + 360) % 360;
+    }
+
+    // Packs the three planes into dst as I420, dst needs i420Size(width, height) bytes
+    public void packI420(ByteBuffer y, int yRowStride,
+                         ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                         int width, int height, byte[] dst) {
+        final int lumaSize = width * height;
+        final int chromaWidth = width / 2;
+        final int chromaHeight = height / 2;
+        final int chromaSize = chromaWidth * chromaHeight;
+        if (dst.length < i420Size(width, height)) {
+            throw new IllegalArgumentException("Buffer too small: " + dst.length);
+        }
+        copyPlane(y, yRowStride, 1, width, height, dst, 0);
+        copyPlane(u, uvRowStride, uvPixelStride, chromaWidth, chromaHeight, dst, lumaSize);
+        copyPlane(v, uvRowStride, uvPixelStride, chromaWidth, chromaHeight, dst, lumaSize + chromaSize);
+    }
+
+    // Copies a width x height plane into dst starting at dstOffset, dropping row padding
+    // and interleaved bytes of the other chroma plane
+    public void copyPlane(ByteBuffer src, int rowStride, int pixelStride,
+                          int width, int height, byte[] dst, int dstOffset) {
+        // Work on a duplicate so the caller's position stays untouched
+        ByteBuffer in = src.duplicate();
+
+        if (pixelStride == 1 && rowStride == width) {
+            // Tightly packed, one bulk copy
+            in.get(dst, dstOffset, width * height);
+            return;
+        }
+
+        final int base = in.position();
+        // The last row may be cut right after its last pixel
+        final int rowLength = (width - 1) * pixelStride + 1;
+        if (pixelStride != 1 && rowBuffer.length < rowLength) {
+            rowBuffer = new byte[rowLength];
+        }
+        int out = dstOffset;
+        for (int row = 0; row < height; row++) {
+            in.position(base + row * rowStride);
+            if (pixelStride == 1) {
+                in.get(dst, out, width);
+            } else {
+                in.get(rowBuffer, 0, rowLength);
+                for (int col = 0; col < width; col++) {
+                    dst[out + col] = rowBuffer[col * pixelStride];
+                }
+            }
+            out += width;
+        }
+    }
+}
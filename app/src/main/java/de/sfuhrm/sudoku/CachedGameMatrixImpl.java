@@ -31,68 +31,112 @@ import java.util.Arrays;
  */
 class CachedGameMatrixImpl extends GameMatrixImpl implements Cloneable {
 
-    /** Buffered free masks per row.
-     * A set 1-bit means that the digit 1 is free for use.
-     * A set 2-bit means that the digit 2 is free for use.
-     * And so on.
-     */
-    private int[] rowFree;
+    /** Offset of the row free masks in {@link #state}. */
+    private static final int ROW_FREE = 0;
+
+    /** Offset of the column free masks in {@link #state}. */
+    private static final int COLUMN_FREE = ROW_FREE + SIZE;
+
+    /** Offset of the block free masks in {@link #state}. */
+    private static final int BLOCK_FREE = COLUMN_FREE + SIZE;
 
-    /** Buffered free masks per column.
-     * @see #rowFree
+    /** Index of the count of non-{@link #UNSET} cells in {@link #state}.
+     * @see #getSetCount()
      */
-    private int[] columnFree;
+    private static final int SET_COUNT = BLOCK_FREE + SIZE;
 
-    /** Buffered free masks per block.
-     * @see #rowFree
+    /** The number of ints of the cached state.
+     * @see #saveState(byte[], int, int[], int)
      */
-    private int[][] blockFree;
+    static final int STATE_SIZE = SET_COUNT + 1;
 
-    /** The count of non-{@link #UNSET} cells.
-     * @see #getSetCount()
+    /** The cached state.
+     * Buffered free masks per row, column and block (in row-major order)
+     * followed by the set count.
+     * A set 1-bit in a mask means that the digit 1 is free for use.
+     * A set 2-bit means that the digit 2 is free for use.
+     * And so on.
      */
-    private int setCount;
+    private int[] state;
 
     /**
      * Creates an empty full-writable riddle.
      */
     CachedGameMatrixImpl() {
-        blockFree = new int[BLOCK_COUNT][BLOCK_COUNT];
-        rowFree = new int[SIZE];
-        columnFree = new int[SIZE];
-
-        for (int i = 0; i < SIZE; i++) {
-            rowFree[i] = MASK_FOR_NINE_BITS;
-            columnFree[i] = MASK_FOR_NINE_BITS;
-        }
+        state = new int[STATE_SIZE];
+        dataChanged();
+    }
 
-        for (int i = 0; i < BLOCK_COUNT; i++) {
-            for (int j = 0; j < BLOCK_COUNT; j++) {
-                blockFree[i][j] = MASK_FOR_NINE_BITS;
+    @Override
+    protected void dataChanged() {
+        Arrays.fill(state, ROW_FREE, SET_COUNT, MASK_FOR_NINE_BITS);
+        state[SET_COUNT] = 0;
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                byte value = get(row, column);
+                if (value == UNSET) {
+                    continue;
+                }
+                assert (getFreeMask(row, column) & (1 << value)) != 0
+                        : "Value " + value
+                        + " is already used, would destroy class invariant";
+                int bitMask = ~(1 << value);
+                state[ROW_FREE + row] &= bitMask;
+                state[COLUMN_FREE + column] &= bitMask;
+                state[BLOCK_FREE + blockOf(row, column)] &= bitMask;
+                state[SET_COUNT]++;
             }
         }
     }
 
+    /** Saves the complete state into flat arrays.
+     * @param cells receives the {@link #TOTAL_FIELDS} cell values.
+     * @param cellOffset the index of the first cell value in
+     * {@code cells}.
+     * @param cached receives the {@link #STATE_SIZE} cached ints.
+     * @param cachedOffset the index of the first int in {@code cached}.
+     * @see #restoreState(byte[], int, int[], int)
+     */
+    final void saveState(final byte[] cells, final int cellOffset,
+            final int[] cached, final int cachedOffset) {
+        getAll(cells, cellOffset);
+        System.arraycopy(state, 0, cached, cachedOffset, STATE_SIZE);
+    }
+
+    /** Restores a state saved with
+     * {@link #saveState(byte[], int, int[], int)}.
+     * @param cells the cell values.
+     * @param cellOffset the index of the first cell value in
+     * {@code cells}.
+     * @param cached the cached ints.
+     * @param cachedOffset the index of the first int in {@code cached}.
+     */
+    final void restoreState(final byte[] cells, final int cellOffset,
+            final int[] cached, final int cachedOffset) {
+        copyFrom(cells, cellOffset);
+        System.arraycopy(cached, cachedOffset, state, 0, STATE_SIZE);
+    }
+
     @Override
     protected int getBlockFreeMask(final int row, final int column) {
-        return blockFree[row / BLOCK_SIZE][column / BLOCK_SIZE];
+        return state[BLOCK_FREE + blockOf(row, column)];
     }
 
     @Override
     protected int getColumnFreeMask(final int column) {
-        return columnFree[column];
+        return state[COLUMN_FREE + column];
     }
 
     @Override
     protected int getRowFreeMask(final int row) {
-        return rowFree[row];
+        return state[ROW_FREE + row];
     }
 
     @Override
     public int getFreeMask(final int row, final int column) {
-        return rowFree[row]
-                & columnFree[column]
-                & blockFree[row / BLOCK_SIZE][column / BLOCK_SIZE];
+        return state[ROW_FREE + row]
+                & state[COLUMN_FREE + column]
+                & state[BLOCK_FREE + blockOf(row, column)];
     }
 
     @Override
@@ -100,41 +144,40 @@ class CachedGameMatrixImpl extends GameMatrixImpl implements Cloneable {
         assert validValue(value);
         byte oldValue = super.get(row, column);
         assert validValue(oldValue);
+        int block = blockOf(row, column);
 
         if (oldValue != UNSET) {
             int bitMask = 1 << oldValue;
-            rowFree[row] |= bitMask;
-            columnFree[column] |= bitMask;
-            blockFree[row / BLOCK_SIZE][column / BLOCK_SIZE] |= bitMask;
-            setCount--;
-            assert setCount >= 0;
+            state[ROW_FREE + row] |= bitMask;
+            state[COLUMN_FREE + column] |= bitMask;
+            state[BLOCK_FREE + block] |= bitMask;
+            state[SET_COUNT]--;
+            assert state[SET_COUNT] >= 0;
         }
         if (value != UNSET) {
             assert (getFreeMask(row, column) & (1 << value)) != 0
                     : "Passed value " + value
                     + " is already used, would destroy class invariant";
             int bitMask = ~(1 << value);
-            rowFree[row] &= bitMask;
-            columnFree[column] &= bitMask;
-            blockFree[row / BLOCK_SIZE][column / BLOCK_SIZE] &= bitMask;
-            setCount++;
-            assert setCount <= TOTAL_FIELDS;
+            state[ROW_FREE + row] &= bitMask;
+            state[COLUMN_FREE + column] &= bitMask;
+            state[BLOCK_FREE + block] &= bitMask;
+            state[SET_COUNT]++;
+            assert state[SET_COUNT] <= TOTAL_FIELDS;
         }
         super.set(row, column, value);
     }
 
     @Override
     public int getSetCount() {
-        return setCount;
+        return state[SET_COUNT];
     }
 
     @Override
     public Object clone() {
         CachedGameMatrixImpl clone;
         clone = (CachedGameMatrixImpl) super.clone();
-        clone.blockFree = QuadraticArrays.cloneArray(blockFree);
-        clone.columnFree = Arrays.copyOf(columnFree, columnFree.length);
-        clone.rowFree = Arrays.copyOf(rowFree, rowFree.length);
+        clone.state = state.clone();
         return clone;
     }
 }
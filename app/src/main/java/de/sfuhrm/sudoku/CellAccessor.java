@@ -0,0 +1,78 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import static de.sfuhrm.sudoku.GameMatrix.UNSET;
+
+/**
+ * Reads the cells of a game matrix by their flat index.
+ * Game matrices that do not keep free masks check their rules
+ * with the static methods of this interface.
+ * @author Stephan Fuhrmann
+ */
+interface CellAccessor {
+
+    /** Get the value of a cell by its flat index.
+     * @param index the index of the cell in row-major order.
+     * @return the cell value ranging from 0 to 9.
+     */
+    byte getCell(int index);
+
+    /** Checks that no unit contains a value twice.
+     * @param cells the cells to check.
+     * @return {@code true} if the cells are valid.
+     * @see GameMatrix#isValid()
+     */
+    static boolean isValid(final CellAccessor cells) {
+        for (int[] unit : GameMatrixImpl.UNITS) {
+            int seen = 0;
+            for (int cell : unit) {
+                int bit = (1 << cells.getCell(cell)) & ~1;
+                if ((seen & bit) != 0) {
+                    return false;
+                }
+                seen |= bit;
+            }
+        }
+        return true;
+    }
+
+    /** Checks whether a value can be set without breaking the rules.
+     * @param cells the cells to check.
+     * @param index the index of the cell in row-major order.
+     * @param value the value to check.
+     * @return {@code true} if no peer has the value.
+     * @see GameMatrix#canSet(int, int, byte)
+     */
+    static boolean canSet(final CellAccessor cells,
+            final int index,
+            final byte value) {
+        if (value == UNSET) {
+            return true;
+        }
+        for (int peer : GameMatrixImpl.PEERS[index]) {
+            if (cells.getCell(peer) == value) {
+                return false;
+            }
+        }
+        // like the mutable matrices, the cell itself counts as used
+        return cells.getCell(index) != value;
+    }
+}
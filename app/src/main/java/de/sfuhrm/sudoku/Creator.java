@@ -56,10 +56,11 @@ public final class Creator {
     private final Random random;
 
     /** Private constructor. Use the static methods instead.
+     * @param r the random number generator to use.
      */
-    private Creator() {
+    private Creator(final Random r) {
         riddle = new CachedGameMatrixImpl();
-        random = new Random();
+        random = r;
 
         resultConsumer = t -> {
             winner = t;
@@ -99,7 +100,18 @@ public final class Creator {
      * No fields are {@link GameMatrix#UNSET unset}.
      */
     public static GameMatrix createFull() {
-        Creator c = new Creator();
+        return createFull(new Random());
+    }
+
+    /**
+     * Creates a valid fully setup sudoku.
+     * The same sequence of random numbers yields the same sudoku.
+     * @param random the random number generator to use.
+     * @return a fully filled sudoku board.
+     * No fields are {@link GameMatrix#UNSET unset}.
+     */
+    public static GameMatrix createFull(final Random random) {
+        Creator c = new Creator(random);
         c.riddle.clear();
 
         // * 0 0
@@ -124,97 +136,33 @@ public final class Creator {
     }
 
     /** Creates a variant of a fully-filled game matrix. The
-     * variant is calculated very efficiently by applying simple
-     * transformations.
+     * variant is calculated very efficiently by applying a random
+     * element of the sudoku symmetry group.
      * @param fullyFilled the input matrix to transform. All fields need
      * to be filled.
      * @return a transformed variant of the input game matrix.
      * @throws IllegalArgumentException if there are unset fields in the
      * GameMatrix.
+     * @see FullGridGenerator
      */
     public static GameMatrix createVariant(
             final GameMatrix fullyFilled) {
-        GameMatrix target = new GameMatrixImpl();
-        Random random = new Random();
-
-        byte[] substitution = createNumbersToDistribute(random);
-        for (int row = 0; row < GameMatrix.SIZE; row++) {
-            for (int column = 0; column < GameMatrix.SIZE; column++) {
-                byte original = fullyFilled.get(row, column);
-                if (original == GameMatrix.UNSET) {
-                    throw new IllegalArgumentException(
-                            "There are unset fields in the given GameMatrix");
-                }
-                byte substitute = substitution[original - 1];
-                target.set(row, column, substitute);
-            }
-        }
-
-        // row swapping within blocks
-        for (int i = 0; i < GameMatrix.BLOCK_COUNT; i++) {
-            boolean swap = random.nextBoolean();
-            if (swap) {
-                // swapped row distance: 1 or 2
-                int distance = 1 + random.nextInt(2);
-                int offset = 0;
-                if (distance != 2) {
-                    offset = random.nextInt(2);
-                }
-                swapRow(target,
-                        i * GameMatrix.BLOCK_SIZE + offset,
-                        i * GameMatrix.BLOCK_SIZE + offset + distance);
-            }
-        }
-
-        // column swapping within blocks
-        for (int i = 0; i < GameMatrix.BLOCK_COUNT; i++) {
-            boolean swap = random.nextBoolean();
-            if (swap) {
-                // swapped column distance: 1 or 2
-                int distance = 1 + random.nextInt(2);
-                int offset = 0;
-                if (distance != 2) {
-                    offset = random.nextInt(2);
-                }
-                swapColumn(target,
-                        i * GameMatrix.BLOCK_SIZE + offset,
-                        i * GameMatrix.BLOCK_SIZE + offset + distance);
-            }
-        }
-
-        return target;
+        return createVariant(fullyFilled, new Random());
     }
 
-    /** Swaps two rows in the given matrix.
-     * @param matrix the game matrix to swap rows in.
-     * @param rowA the first row to swap.
-     * @param rowB the second row to swap.
-     */
-    protected static void swapRow(final GameMatrix matrix,
-            final int rowA,
-            final int rowB) {
-        for (int column = 0; column < GameMatrix.SIZE; column++) {
-            byte av = matrix.get(rowA, column);
-            byte bv = matrix.get(rowB, column);
-            matrix.set(rowB, column, av);
-            matrix.set(rowA, column, bv);
-        }
-    }
-
-    /** Swaps two columns in the given matrix.
-     * @param matrix the game matrix to swap rows in.
-     * @param columnA the first column to swap.
-     * @param columnB the second column to swap.
+    /** Creates a variant of a fully-filled game matrix.
+     * @param fullyFilled the input matrix to transform. All fields need
+     * to be filled.
+     * @param random the random number generator to use.
+     * @return a transformed variant of the input game matrix.
+     * @throws IllegalArgumentException if there are unset fields in the
+     * GameMatrix.
+     * @see #createVariant(de.sfuhrm.sudoku.GameMatrix)
      */
-    protected static void swapColumn(final GameMatrix matrix,
-            final int columnA,
-            final int columnB) {
-        for (int row = 0; row < GameMatrix.SIZE; row++) {
-            byte av = matrix.get(row, columnA);
-            byte bv = matrix.get(row, columnB);
-            matrix.set(row, columnB, av);
-            matrix.set(row, columnA, bv);
-        }
+    public static GameMatrix createVariant(
+            final GameMatrix fullyFilled,
+            final Random random) {
+        return new FullGridGenerator(fullyFilled).next(random);
     }
 
     /** Create a random array with numbers to distribute.
@@ -244,40 +192,6 @@ public final class Creator {
         return numbersToDistributeArray;
     }
 
-    /** Checks whether on the given riddle the given cell can
-     * be cleared. A cell can only be cleared if the result remains
-     * uniqely solvable.
-     * @param riddle riddle to check clearability in.
-     * @param column the column in the riddle.
-     * @param row the row in the riddle.
-     * @return {@code true} if the field with the coordinates can be
-     * cleared without endangering the unique solvability of the Sudoku.
-     */
-    private static boolean canClear(final BitFreeMatrixInterface riddle,
-            final int row,
-            final int column) {
-        assert riddle.get(row, column) != GameMatrix.UNSET;
-
-        // if there's only one free val, it's unique
-        int freeMask = riddle.getFreeMask(row, column);
-        int freeVals = Integer.bitCount(freeMask);
-        if (freeVals == 0) {
-            return true;
-        }
-
-        int old = riddle.get(row, column);
-        riddle.set(row, column, GameMatrix.UNSET);
-
-        Solver s = new Solver(riddle);
-        s.setLimit(2);
-        List<GameMatrix> results = s.solve(500);
-        boolean result = results.size() == 1;
-
-        // rollback
-        riddle.set(row, column, (byte) old);
-        return result;
-    }
-
     /**
      * Creates a riddle setup sudoku.
      *
@@ -292,49 +206,161 @@ public final class Creator {
      * @see #createVariant(de.sfuhrm.sudoku.GameMatrix)
      */
     public static Riddle createRiddle(final GameMatrix fullMatrix) {
-        Random random = new Random();
+        return createRiddle(fullMatrix, new Random());
+    }
 
-        RiddleImpl cur = new RiddleImpl();
-        cur.setAll(fullMatrix.getArray());
+    /**
+     * Creates a riddle setup sudoku.
+     *
+     * @param fullMatrix a fully set up (solved) and valid sudoku.
+     * @param random the random number generator to use.
+     * @return a maximally cleared sudoku.
+     * @see #createRiddle(de.sfuhrm.sudoku.GameMatrix)
+     */
+    public static Riddle createRiddle(final GameMatrix fullMatrix,
+            final Random random) {
+        RiddleReducer cur = new RiddleReducer(fullMatrix);
+        reduce(cur, 0, GameMatrix.TOTAL_FIELDS, random, false);
+
+        // the preset fields are non-writable
+        return cur.toRiddle();
+    }
+
+    /**
+     * Creates a riddle matching the given spec. Candidates are created
+     * from new full matrices until one matches the spec or the
+     * time limit of the spec is exceeded.
+     * The time limit is checked between candidates.
+     * An interrupt of the calling thread ends the search like the time
+     * limit does, within one clue of the current candidate. The
+     * interrupt status stays set.
+     *
+     * @param spec the spec the riddle shall match.
+     * @return a riddle matching the spec, or {@code null} if none
+     * was found within the time limit or the thread was interrupted.
+     * @see GenerationSpec#getStatistics()
+     */
+    public static Riddle createRiddle(final GenerationSpec spec) {
+        return createRiddle(spec, new Random());
+    }
+
+    /**
+     * Creates a riddle matching the given spec.
+     *
+     * @param spec the spec the riddle shall match.
+     * @param random the random number generator to use.
+     * @return a riddle matching the spec, or {@code null} if none
+     * was found within the time limit or the thread was interrupted.
+     * @see #createRiddle(GenerationSpec)
+     */
+    public static Riddle createRiddle(final GenerationSpec spec,
+            final Random random) {
+        long start = System.currentTimeMillis();
+        do {
+            Riddle result = createCandidate(createFull(random), spec, random);
+            if (result != null) {
+                return result;
+            }
+        } while (System.currentTimeMillis() - start < spec.getTimeLimit()
+                && !Thread.currentThread().isInterrupted());
+        return null;
+    }
+
+    /**
+     * Creates one riddle candidate for a spec.
+     *
+     * @param fullMatrix a fully set up (solved) and valid sudoku.
+     * @param spec the spec the riddle shall match.
+     * @param random the random number generator to use.
+     * @return a riddle matching the spec, or {@code null} if the
+     * candidate missed the spec or the thread was interrupted.
+     */
+    private static Riddle createCandidate(final GameMatrix fullMatrix,
+            final GenerationSpec spec,
+            final Random random) {
+        GenerationStatistics statistics = spec.getStatistics();
+        statistics.countCandidate();
+
+        RiddleReducer cur = new RiddleReducer(fullMatrix);
+        cur.setNodeLimit(spec.getNodeLimit());
+        if (!reduce(cur, spec.getMinimumClues(), spec.getMaximumClues(),
+                random, true)) {
+            if (!Thread.currentThread().isInterrupted()) {
+                statistics.countAbortedEarly();
+            }
+            return null;
+        }
 
+        if (spec.hasDifficultyRange()) {
+            int difficulty = cur.rateDifficulty();
+            if (difficulty < spec.getMinimumDifficulty()
+                    || difficulty > spec.getMaximumDifficulty()) {
+                statistics.countRejectedDifficulty();
+                return null;
+            }
+        }
+
+        statistics.countAccepted();
+        return cur.toRiddle();
+    }
+
+    /**
+     * Clears clues of a riddle as long as it stays uniquely solvable.
+     *
+     * @param cur the riddle to clear clues in.
+     * @param minimumClues the number of clues to stop clearing at.
+     * @param maximumClues the number of clues the riddle must get down
+     * to. Clearing is aborted once this can not be reached anymore.
+     * @param random the random number generator to use.
+     * @param interruptible whether to abort clearing when the thread
+     * gets interrupted.
+     * @return {@code true} if the riddle has at most
+     * {@code maximumClues} clues, {@code false} if clearing was aborted.
+     */
+    private static boolean reduce(final RiddleReducer cur,
+            final int minimumClues,
+            final int maximumClues,
+            final Random random,
+            final boolean interruptible) {
+        Thread thread = Thread.currentThread();
         int multi = 0;
 
         // first the randomized loop runs
         // second a deterministic loop over all cells runs
 
         // random loop
-        while (multi < CREATE_RIDDLE_RANDOM_CLEAR) {
+        while (multi < CREATE_RIDDLE_RANDOM_CLEAR
+                && cur.getSetCount() > minimumClues) {
+            if (interruptible && thread.isInterrupted()) {
+                return false;
+            }
             int i = random.nextInt(GameMatrix.SIZE);
             int j = random.nextInt(GameMatrix.SIZE);
 
-            if (cur.get(j, i) != GameMatrix.UNSET) {
-                if (canClear(cur, j, i)) {
-                    cur.set(j, i, GameMatrix.UNSET);
-                } else {
-                    multi++;
-                }
+            if (cur.get(j, i) != GameMatrix.UNSET
+                && !cur.tryClear(j, i)) {
+                multi++;
             }
         }
 
         // deterministic loop
+        // every clue not visited yet can at most be cleared
+        int untested = cur.getSetCount();
         for (int i = 0; i < GameMatrix.SIZE; i++) {
             for (int j = 0; j < GameMatrix.SIZE; j++) {
-                if (GameMatrix.UNSET != cur.get(j, i)
-                    && canClear(cur, j, i)) {
-                    cur.set(j, i, GameMatrix.UNSET);
+                if (cur.getSetCount() - untested > maximumClues
+                        || (interruptible && thread.isInterrupted())) {
+                    return false;
+                }
+                if (GameMatrix.UNSET != cur.get(j, i)) {
+                    untested--;
+                    if (cur.getSetCount() > minimumClues) {
+                        cur.tryClear(j, i);
+                    }
                 }
             }
         }
-
-        // set the preset fields non-writable
-        for (int i = 0; i < GameMatrix.SIZE; i++) {
-            for (int j = 0; j < GameMatrix.SIZE; j++) {
-                cur.setWritable(j, i, cur.get(j, i)
-                        == GameMatrix.UNSET);
-            }
-        }
-
-        return cur;
+        return cur.getSetCount() <= maximumClues;
     }
 
     /** Fills a block with randomly ordered numbers from 1 to 9.
@@ -0,0 +1,226 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A probabilistic {@link FingerprintIndex} using a blocked Bloom
+ * filter. All bits of a fingerprint are in one block of 512 bits,
+ * which is one cache line, so an add or lookup touches one cache line
+ * only. The bit positions within the block are taken 9 bits at a time
+ * from mixed fingerprints. Bits are set with compare-and-set, so
+ * threads can add concurrently without locks.
+ * <br>
+ * Fingerprints that were never added can be reported as contained,
+ * so {@link #add(long)} wrongly reports a duplicate with about the
+ * configured false positive rate once the filter holds the expected
+ * number of fingerprints. Blocking makes the real rate slightly
+ * higher than for a classic Bloom filter of the same size.
+ * @author Stephan Fuhrmann
+ */
+public final class FingerprintBloomFilter implements FingerprintIndex {
+
+    /** The number of longs per block. */
+    private static final int BLOCK_WORDS = 8;
+
+    /** The number of bits per block. */
+    private static final int BLOCK_BITS = BLOCK_WORDS * Long.SIZE;
+
+    /** The number of bits of a bit position within a block. */
+    private static final int POSITION_BITS = 9;
+
+    /** The number of bit positions taken from one random long. */
+    private static final int POSITIONS_PER_LONG = Long.SIZE / POSITION_BITS;
+
+    /** Salt for deriving the bit positions from a fingerprint. */
+    private static final long POSITION_SALT = 0x9E3779B97F4A7C15L;
+
+    /** The factor to grow the bits per fingerprint by while sizing. */
+    private static final double GROWTH = 1.05;
+
+    /** The maximum number of bits set per fingerprint. */
+    private static final int MAX_HASHES = 16;
+
+    /** The bits of all blocks. */
+    private final AtomicLongArray words;
+
+    /** The number of blocks. */
+    private final int blocks;
+
+    /** The number of bits set per fingerprint. */
+    private final int hashes;
+
+    /** The number of calls to {@link #add(long)}. */
+    private final AtomicLong added = new AtomicLong();
+
+    /** The number of duplicates found. */
+    private final AtomicLong duplicates = new AtomicLong();
+
+    /**
+     * Creates an empty filter.
+     * @param expectedCount the number of distinct fingerprints to
+     * size the filter for.
+     * @param falsePositiveRate the wanted probability of reporting
+     * a new fingerprint as contained, for example 0.001.
+     * @throws IllegalArgumentException if the count is not positive,
+     * the rate is not between 0 and 1 or the filter would be too
+     * large.
+     */
+    public FingerprintBloomFilter(final long expectedCount,
+            final double falsePositiveRate) {
+        if (expectedCount <= 0) {
+            throw new IllegalArgumentException(
+                    "expectedCount must be positive: " + expectedCount);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException(
+                    "falsePositiveRate must be in (0, 1): "
+                    + falsePositiveRate);
+        }
+        // start with the size of a classic filter and grow it until
+        // the blocked layout reaches the wanted rate
+        double ln2 = Math.log(2);
+        double bitsPerKey = -Math.log(falsePositiveRate) / (ln2 * ln2);
+        int k;
+        while (true) {
+            k = (int) Math.max(1, Math.min(MAX_HASHES,
+                    Math.round(bitsPerKey * ln2)));
+            if (blockedFalsePositiveRate(BLOCK_BITS / bitsPerKey, k)
+                    <= falsePositiveRate) {
+                break;
+            }
+            bitsPerKey *= GROWTH;
+        }
+        long blockCount = (long) Math.ceil(
+                expectedCount * bitsPerKey / BLOCK_BITS);
+        if (blockCount * BLOCK_WORDS > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "Filter too large for " + expectedCount
+                    + " fingerprints at rate " + falsePositiveRate);
+        }
+        blocks = (int) blockCount;
+        hashes = k;
+        words = new AtomicLongArray(blocks * BLOCK_WORDS);
+    }
+
+    /** Estimates the false positive rate of a blocked filter.
+     * The number of fingerprints per block follows a Poisson
+     * distribution.
+     * @param keysPerBlock the mean number of fingerprints per block.
+     * @param k the number of bits set per fingerprint.
+     * @return the estimated false positive rate.
+     */
+    private static double blockedFalsePositiveRate(
+            final double keysPerBlock, final int k) {
+        double result = 0;
+        double poisson = Math.exp(-keysPerBlock);
+        int limit = (int) (keysPerBlock * 2 + 64);
+        for (int keys = 0; keys < limit; keys++) {
+            double zero = Math.pow(1 - 1.0 / BLOCK_BITS, (double) k * keys);
+            result += poisson * Math.pow(1 - zero, k);
+            poisson *= keysPerBlock / (keys + 1);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean add(final long fingerprint) {
+        added.incrementAndGet();
+        long h = GridFingerprint.mix(fingerprint);
+        int base = blockOf(h) * BLOCK_WORDS;
+        long random = h;
+        long bits = 0;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            if (i % POSITIONS_PER_LONG == 0) {
+                random = GridFingerprint.mix(random + POSITION_SALT);
+                bits = random;
+            }
+            int index = base + ((int) (bits >>> 6) & (BLOCK_WORDS - 1));
+            long mask = 1L << bits;
+            long current = words.get(index);
+            while ((current & mask) == 0) {
+                if (words.compareAndSet(index, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+                current = words.get(index);
+            }
+            bits >>>= POSITION_BITS;
+        }
+        if (!changed) {
+            duplicates.incrementAndGet();
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(final long fingerprint) {
+        long h = GridFingerprint.mix(fingerprint);
+        int base = blockOf(h) * BLOCK_WORDS;
+        long random = h;
+        long bits = 0;
+        for (int i = 0; i < hashes; i++) {
+            if (i % POSITIONS_PER_LONG == 0) {
+                random = GridFingerprint.mix(random + POSITION_SALT);
+                bits = random;
+            }
+            int index = base + ((int) (bits >>> 6) & (BLOCK_WORDS - 1));
+            if ((words.get(index) & (1L << bits)) == 0) {
+                return false;
+            }
+            bits >>>= POSITION_BITS;
+        }
+        return true;
+    }
+
+    /** Maps a mixed fingerprint to its block.
+     * @param h the mixed fingerprint.
+     * @return the block index.
+     */
+    private int blockOf(final long h) {
+        // multiply-shift range reduction
+        return (int) (((h >>> Integer.SIZE) * blocks) >>> Integer.SIZE);
+    }
+
+    /** Get the number of bits set per fingerprint.
+     * @return the number of hash functions.
+     */
+    public int getHashes() {
+        return hashes;
+    }
+
+    @Override
+    public long getAdded() {
+        return added.get();
+    }
+
+    @Override
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+}
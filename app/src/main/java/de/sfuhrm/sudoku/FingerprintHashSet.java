@@ -0,0 +1,158 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An exact {@link FingerprintIndex} storing the fingerprints in an
+ * open-addressing table of primitive longs with linear probing.
+ * Slots are claimed with compare-and-set, so threads can add
+ * concurrently without locks. The table does not grow; it is sized
+ * for an expected number of fingerprints on creation and uses
+ * 8 bytes per slot.
+ * <br>
+ * The value 0 marks free slots. The fingerprint 0 is stored as
+ * another fixed value, so these two fingerprints are not told apart.
+ * @author Stephan Fuhrmann
+ */
+public final class FingerprintHashSet implements FingerprintIndex {
+
+    /** The maximum ratio of used to total slots. */
+    private static final double MAX_LOAD = 0.75;
+
+    /** The marker of a free slot. */
+    private static final long FREE = 0;
+
+    /** The value stored for the fingerprint {@link #FREE}. */
+    private static final long FREE_REPLACEMENT = 0x8000000000000000L;
+
+    /** The slots, {@link #FREE} or a fingerprint. */
+    private final AtomicLongArray slots;
+
+    /** The mask to map a hash to a slot index. */
+    private final int mask;
+
+    /** The number of fingerprints stored. */
+    private final AtomicLong size = new AtomicLong();
+
+    /** The number of calls to {@link #add(long)}. */
+    private final AtomicLong added = new AtomicLong();
+
+    /** The number of duplicates found. */
+    private final AtomicLong duplicates = new AtomicLong();
+
+    /**
+     * Creates an empty set.
+     * @param expectedCount the number of distinct fingerprints to
+     * reserve space for.
+     * @throws IllegalArgumentException if the count is not positive
+     * or too large for one table.
+     */
+    public FingerprintHashSet(final long expectedCount) {
+        if (expectedCount <= 0) {
+            throw new IllegalArgumentException(
+                    "expectedCount must be positive: " + expectedCount);
+        }
+        long minimum = (long) Math.ceil(expectedCount / MAX_LOAD);
+        if (minimum > 1 << 30) {
+            throw new IllegalArgumentException(
+                    "expectedCount too large: " + expectedCount);
+        }
+        int capacity = Integer.highestOneBit((int) minimum);
+        if (capacity < minimum) {
+            capacity <<= 1;
+        }
+        slots = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+    }
+
+    @Override
+    public boolean add(final long fingerprint) {
+        added.incrementAndGet();
+        long key = fingerprint == FREE ? FREE_REPLACEMENT : fingerprint;
+        int index = (int) GridFingerprint.mix(key) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            long current = slots.get(index);
+            if (current == FREE) {
+                if (slots.compareAndSet(index, FREE, key)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                // lost the race, look at the winner
+                current = slots.get(index);
+            }
+            if (current == key) {
+                duplicates.incrementAndGet();
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        throw new IllegalStateException("Set is full, capacity "
+                + slots.length());
+    }
+
+    @Override
+    public boolean contains(final long fingerprint) {
+        long key = fingerprint == FREE ? FREE_REPLACEMENT : fingerprint;
+        int index = (int) GridFingerprint.mix(key) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            long current = slots.get(index);
+            if (current == key) {
+                return true;
+            }
+            if (current == FREE) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /** Get the number of distinct fingerprints stored.
+     * @return the number of used slots.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /** Get the number of slots.
+     * @return the number of fingerprints that fit into the table.
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    @Override
+    public long getAdded() {
+        return added.get();
+    }
+
+    @Override
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return (long) slots.length() * Long.BYTES;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * A set of 64 bit grid fingerprints for dropping duplicates in large
+ * generation runs. Implementations can be shared between threads
+ * without locking.
+ * <br>Example usage:
+ * <br>
+ * <code>
+ *  FingerprintIndex index = new FingerprintHashSet(10_000_000);<br>
+ *  Riddle riddle = Creator.createRiddle(Creator.createFull());<br>
+ *  if (index.add(GridFingerprint.invariant(riddle))) {<br>
+ *  &nbsp;&nbsp;// first time seen<br>
+ *  }<br>
+ * </code>
+ * @see GridFingerprint
+ * @author Stephan Fuhrmann
+ */
+public interface FingerprintIndex {
+
+    /** Adds a fingerprint to the index.
+     * @param fingerprint the fingerprint to add.
+     * @return {@code true} if the fingerprint was not in the index
+     * before, {@code false} if it is a duplicate.
+     */
+    boolean add(long fingerprint);
+
+    /** Checks whether a fingerprint is in the index.
+     * @param fingerprint the fingerprint to look up.
+     * @return {@code true} if the fingerprint was added before.
+     * Probabilistic implementations may also return {@code true}
+     * for fingerprints that were never added.
+     */
+    boolean contains(long fingerprint);
+
+    /** Get the number of calls to {@link #add(long)}.
+     * @return the number of fingerprints offered.
+     */
+    long getAdded();
+
+    /** Get the number of calls to {@link #add(long)} that
+     * returned {@code false}.
+     * @return the number of duplicates.
+     */
+    long getDuplicates();
+
+    /** Get the ratio of duplicates to added fingerprints.
+     * @return the duplicate rate ranging from 0 to 1.
+     */
+    default double getDuplicateRate() {
+        long added = getAdded();
+        return added == 0 ? 0 : (double) getDuplicates() / added;
+    }
+
+    /** Get the memory used by the index.
+     * @return the size of the index tables in bytes.
+     */
+    long getMemoryBytes();
+}
@@ -0,0 +1,226 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import static de.sfuhrm.sudoku.GameMatrix.validCoords;
+import static de.sfuhrm.sudoku.GameMatrix.validValue;
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of a game matrix.
+ * The cells are packed into 4 bits each. A 64 bit fingerprint is
+ * calculated once on creation and used for {@link #hashCode()} and as
+ * a quick pre-check in {@link #equals(Object)}, which makes instances
+ * suitable as keys in maps and sets.
+ * All modifying methods throw {@link UnsupportedOperationException}.
+ * @see #freeze(GameMatrix)
+ * @see #thaw()
+ * @author Stephan Fuhrmann
+ */
+public final class FrozenGameMatrix implements GameMatrix {
+
+    /** The number of bits per packed cell. */
+    private static final int BITS_PER_CELL = 4;
+
+    /** The number of cells per packed long. */
+    private static final int CELLS_PER_WORD = Long.SIZE / BITS_PER_CELL;
+
+    /** The mask for one packed cell. */
+    private static final long CELL_MASK = (1L << BITS_PER_CELL) - 1;
+
+    /** The number of longs for all packed cells. */
+    private static final int WORDS = (TOTAL_FIELDS + CELLS_PER_WORD - 1)
+            / CELLS_PER_WORD;
+
+    /** The cells in row-major order, 4 bits per cell. */
+    private final long[] packed;
+
+    /** The fingerprint of the cells. */
+    private final long fingerprint;
+
+    /** The number of set cells. */
+    private final int setCount;
+
+    /** Creates a snapshot of the given cells.
+     * @param cells the cell values in row-major order.
+     */
+    private FrozenGameMatrix(final byte[] cells) {
+        packed = new long[WORDS];
+        int count = 0;
+        for (int i = 0; i < TOTAL_FIELDS; i++) {
+            assert validValue(cells[i]);
+            packed[i / CELLS_PER_WORD] |= (long) cells[i]
+                    << ((i % CELLS_PER_WORD) * BITS_PER_CELL);
+            if (cells[i] != UNSET) {
+                count++;
+            }
+        }
+        setCount = count;
+        fingerprint = fingerprint(packed);
+    }
+
+    /** Creates an immutable snapshot of a game matrix.
+     * Writability information of riddles is not part of the snapshot.
+     * @param matrix the matrix to take the snapshot of.
+     * @return the snapshot, or the matrix itself if it already is one.
+     */
+    public static FrozenGameMatrix freeze(final GameMatrix matrix) {
+        if (matrix instanceof FrozenGameMatrix) {
+            return (FrozenGameMatrix) matrix;
+        }
+        byte[] cells = new byte[TOTAL_FIELDS];
+        if (matrix instanceof GameMatrixImpl) {
+            ((GameMatrixImpl) matrix).getAll(cells, 0);
+        } else {
+            int k = 0;
+            for (int row = 0; row < SIZE; row++) {
+                for (int column = 0; column < SIZE; column++) {
+                    cells[k++] = matrix.get(row, column);
+                }
+            }
+        }
+        return new FrozenGameMatrix(cells);
+    }
+
+    /** Creates a modifiable copy of this snapshot.
+     * @return a new game matrix with the same cell values.
+     */
+    public GameMatrix thaw() {
+        byte[] cells = new byte[TOTAL_FIELDS];
+        getAll(cells);
+        GameMatrixImpl result = new GameMatrixImpl();
+        result.setAll(cells);
+        return result;
+    }
+
+    /** Gets the cells in row-major order.
+     * @param target a 81-element array to receive the cell values.
+     */
+    void getAll(final byte[] target) {
+        for (int i = 0; i < TOTAL_FIELDS; i++) {
+            target[i] = get(i);
+        }
+    }
+
+    /** Calculates the fingerprint of packed cells.
+     * Every word is mixed with the finalizer of the MurmurHash3
+     * 64 bit hash function.
+     * @param words the packed cells.
+     * @return a 64 bit fingerprint.
+     */
+    private static long fingerprint(final long[] words) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (long word : words) {
+            h = GridFingerprint.mix(h ^ GridFingerprint.mix(word));
+        }
+        return h;
+    }
+
+    /** Get the 64 bit fingerprint of the cells.
+     * Equal matrices have equal fingerprints.
+     * @see GridFingerprint#exact(GameMatrix)
+     * @return the fingerprint.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /** Get the value of a cell by its flat index.
+     * @param index the index of the cell in row-major order.
+     * @return the cell value ranging from 0 to 9.
+     */
+    private byte get(final int index) {
+        return (byte) ((packed[index / CELLS_PER_WORD]
+                >>> ((index % CELLS_PER_WORD) * BITS_PER_CELL)) & CELL_MASK);
+    }
+
+    @Override
+    public byte get(final int row, final int column) {
+        assert validCoords(row, column);
+        return get(GameMatrixImpl.indexOf(row, column));
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Matrix is frozen");
+    }
+
+    @Override
+    public void set(final int row, final int column, final byte value) {
+        throw new UnsupportedOperationException("Matrix is frozen");
+    }
+
+    @Override
+    public void setAll(final byte[][] initializationData) {
+        throw new UnsupportedOperationException("Matrix is frozen");
+    }
+
+    @Override
+    public int getSetCount() {
+        return setCount;
+    }
+
+    @Override
+    public byte[][] getArray() {
+        byte[][] result = new byte[SIZE][SIZE];
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                result[row][column] = get(row, column);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isValid() {
+        return CellAccessor.isValid(this::get);
+    }
+
+    @Override
+    public boolean canSet(final int row, final int column, final byte value) {
+        assert validCoords(row, column);
+        assert validValue(value);
+        return CellAccessor.canSet(this::get,
+                GameMatrixImpl.indexOf(row, column), value);
+    }
+
+    @Override
+    public String toString() {
+        return QuadraticArrays.toString(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (fingerprint ^ (fingerprint >>> Integer.SIZE));
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FrozenGameMatrix)) {
+            return false;
+        }
+        final FrozenGameMatrix other = (FrozenGameMatrix) obj;
+        return fingerprint == other.fingerprint
+                && Arrays.equals(packed, other.packed);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Creates fully filled sudokus in bulk by transforming seed matrices.
+ * Every created matrix is a seed with a uniformly drawn element of the
+ * sudoku symmetry group applied: a permutation of the bands, the stacks,
+ * the rows within each band and the columns within each stack, an
+ * optional transposition and a relabelling of the digits.
+ * The transformation is applied in one pass writing
+ * {@link GameMatrix#TOTAL_FIELDS} bytes in row-major order into flat
+ * buffers.
+ * Instances are not thread-safe, use one per thread.
+ * @see Creator#createVariant(GameMatrix)
+ * @author Stephan Fuhrmann
+ */
+public final class FullGridGenerator {
+
+    /** All permutations of three elements. */
+    private static final int[][] PERMUTATIONS_OF_THREE = {
+        {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+
+    /** The seed matrices, {@link GameMatrix#TOTAL_FIELDS} bytes each. */
+    private final byte[] seeds;
+
+    /** The number of seed matrices. */
+    private final int seedCount;
+
+    /** Source row for each target row of the current transformation. */
+    private final int[] rowMap = new int[GameMatrix.SIZE];
+
+    /** Source column for each target column of the current
+     * transformation. */
+    private final int[] columnMap = new int[GameMatrix.SIZE];
+
+    /** Target digit for each source digit of the current
+     * transformation. Index 0 is unused. */
+    private final byte[] relabel = new byte[GameMatrix.MAXIMUM_VALUE + 1];
+
+    /**
+     * Creates a generator for the given seeds.
+     * @param seedMatrices the fully filled and valid matrices to
+     * transform. Can be created using {@link Creator#createFull()}.
+     * @throws IllegalArgumentException if there are no seeds or
+     * there are unset fields in a seed.
+     */
+    public FullGridGenerator(final GameMatrix... seedMatrices) {
+        Objects.requireNonNull(seedMatrices, "seedMatrices is null");
+        if (seedMatrices.length == 0) {
+            throw new IllegalArgumentException("No seed matrices given");
+        }
+        seedCount = seedMatrices.length;
+        seeds = new byte[seedCount * GameMatrix.TOTAL_FIELDS];
+        int k = 0;
+        for (GameMatrix seed : seedMatrices) {
+            for (int row = 0; row < GameMatrix.SIZE; row++) {
+                for (int column = 0; column < GameMatrix.SIZE; column++) {
+                    byte value = seed.get(row, column);
+                    if (value == GameMatrix.UNSET) {
+                        throw new IllegalArgumentException(
+                            "There are unset fields in the given GameMatrix");
+                    }
+                    seeds[k++] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates one transformed matrix.
+     * @param random the random number generator to use.
+     * @return a fully filled sudoku board.
+     */
+    public GameMatrix next(final Random random) {
+        byte[] buffer = new byte[GameMatrix.TOTAL_FIELDS];
+        next(random, buffer, 0);
+        GameMatrix result = new GameMatrixImpl();
+        int k = 0;
+        for (int row = 0; row < GameMatrix.SIZE; row++) {
+            for (int column = 0; column < GameMatrix.SIZE; column++) {
+                result.set(row, column, buffer[k++]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates multiple transformed matrices into a flat buffer.
+     * @param random the random number generator to use.
+     * @param target the buffer to write the matrices to.
+     * @param offset the index of the first byte to write.
+     * @param count the number of matrices to write.
+     */
+    public void next(final Random random,
+            final byte[] target,
+            final int offset,
+            final int count) {
+        if (offset < 0 || count < 0
+                || offset + (long) count * GameMatrix.TOTAL_FIELDS
+                    > target.length) {
+            throw new IndexOutOfBoundsException("Buffer too small");
+        }
+        for (int i = 0; i < count; i++) {
+            next(random, target, offset + i * GameMatrix.TOTAL_FIELDS);
+        }
+    }
+
+    /**
+     * Creates one transformed matrix into a flat buffer.
+     * @param random the random number generator to use.
+     * @param target the buffer to write the matrix to in row-major
+     * order.
+     * @param offset the index of the first byte to write.
+     */
+    public void next(final Random random,
+            final byte[] target,
+            final int offset) {
+        int seedOffset = random.nextInt(seedCount) * GameMatrix.TOTAL_FIELDS;
+        drawTransformation(random);
+
+        int rowStride = GameMatrix.SIZE;
+        int columnStride = 1;
+        if (random.nextBoolean()) {
+            // transposition
+            rowStride = 1;
+            columnStride = GameMatrix.SIZE;
+        }
+
+        int k = offset;
+        for (int row = 0; row < GameMatrix.SIZE; row++) {
+            int rowOffset = seedOffset + rowMap[row] * rowStride;
+            for (int column = 0; column < GameMatrix.SIZE; column++) {
+                target[k++] = relabel[
+                        seeds[rowOffset + columnMap[column] * columnStride]];
+            }
+        }
+    }
+
+    /** Draws the row, column and digit mappings.
+     * @param random the random number generator to use.
+     */
+    private void drawTransformation(final Random random) {
+        drawLineMap(random, rowMap);
+        drawLineMap(random, columnMap);
+
+        for (int i = GameMatrix.MINIMUM_VALUE;
+                i <= GameMatrix.MAXIMUM_VALUE; i++) {
+            relabel[i] = (byte) i;
+        }
+        for (int i = GameMatrix.MAXIMUM_VALUE;
+                i > GameMatrix.MINIMUM_VALUE; i--) {
+            int j = GameMatrix.MINIMUM_VALUE + random.nextInt(i);
+            byte tmp = relabel[i];
+            relabel[i] = relabel[j];
+            relabel[j] = tmp;
+        }
+    }
+
+    /** Draws a line mapping that keeps the lines of a block together.
+     * @param random the random number generator to use.
+     * @param map receives the source line for each target line.
+     */
+    private static void drawLineMap(final Random random, final int[] map) {
+        int[] blocks = PERMUTATIONS_OF_THREE[
+                random.nextInt(PERMUTATIONS_OF_THREE.length)];
+        for (int block = 0; block < GameMatrix.BLOCK_COUNT; block++) {
+            int[] lines = PERMUTATIONS_OF_THREE[
+                    random.nextInt(PERMUTATIONS_OF_THREE.length)];
+            int base = block * GameMatrix.BLOCK_SIZE;
+            int sourceBase = blocks[block] * GameMatrix.BLOCK_SIZE;
+            for (int line = 0; line < GameMatrix.BLOCK_SIZE; line++) {
+                map[base + line] = sourceBase + lines[line];
+            }
+        }
+    }
+}
@@ -21,29 +21,101 @@ package de.sfuhrm.sudoku;
 
 import static de.sfuhrm.sudoku.GameMatrix.validCoords;
 import static de.sfuhrm.sudoku.GameMatrix.validValue;
-import static de.sfuhrm.sudoku.GameMatrixImpl.roundToBlock;
 import java.util.Arrays;
 
 /**
  * The quadratic matrix.
+ * The cells are stored in one flat array in row-major order.
+ * Rows, columns and blocks are addressed through static
+ * index tables, so validation and free mask calculation
+ * do not allocate.
  * @author Stephan Fuhrmann
  */
 class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
 
+    /** The number of units (rows, columns and blocks). */
+    static final int UNIT_COUNT = 3 * SIZE;
+
+    /** The number of peers of a cell.
+     * @see #PEERS
+     */
+    static final int PEER_COUNT = 2 * (SIZE - 1)
+            + (BLOCK_SIZE - 1) * (BLOCK_SIZE - 1);
+
     /**
-     * The game field. The first dimension is the row, the second the column.
+     * The cell indices of all units. Index 0 to 8 are the rows,
+     * 9 to 17 the columns and 18 to 26 the blocks in row-major order.
+     */
+    static final int[][] UNITS = new int[UNIT_COUNT][SIZE];
+
+    /**
+     * The cell indices sharing a row, column or block with
+     * a cell, not including the cell itself. The first index is
+     * the cell index.
+     */
+    static final int[][] PEERS = new int[TOTAL_FIELDS][PEER_COUNT];
+
+    static {
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                int index = indexOf(row, column);
+                UNITS[row][column] = index;
+                UNITS[SIZE + column][row] = index;
+                UNITS[2 * SIZE + blockOf(row, column)]
+                        [(row % BLOCK_SIZE) * BLOCK_SIZE
+                        + column % BLOCK_SIZE] = index;
+            }
+        }
+        for (int index = 0; index < TOTAL_FIELDS; index++) {
+            int row = index / SIZE;
+            int column = index % SIZE;
+            int k = 0;
+            for (int other = 0; other < TOTAL_FIELDS; other++) {
+                int otherRow = other / SIZE;
+                int otherColumn = other % SIZE;
+                if (other != index && (otherRow == row
+                        || otherColumn == column
+                        || blockOf(otherRow, otherColumn)
+                            == blockOf(row, column))) {
+                    PEERS[index][k++] = other;
+                }
+            }
+            assert k == PEER_COUNT;
+        }
+    }
+
+    /**
+     * The game field in row-major order.
      * The value 0 means unallocated (see {@link #UNSET}).
      * The values 1-9 mean the corresponding cell
      * value.
      */
-    private byte[][] data;
+    private byte[] data;
 
     /**
      * Creates an empty riddle.
      * @see #setAll(byte[][])
      */
     GameMatrixImpl() {
-        data = new byte[SIZE][SIZE];
+        data = new byte[TOTAL_FIELDS];
+    }
+
+    /** Get the flat index of a cell.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return the index of the cell in row-major order.
+     */
+    static int indexOf(final int row, final int column) {
+        return row * SIZE + column;
+    }
+
+    /** Get the block number of a cell.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return the block number from 0 to 8 in row-major order.
+     */
+    static int blockOf(final int row, final int column) {
+        return (row / BLOCK_SIZE) * BLOCK_COUNT + column / BLOCK_SIZE;
     }
 
     /** Sets all cells to the given values.
@@ -53,10 +125,49 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
     @Override
     public final void setAll(final byte[][] initializationData) {
         for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                set(j, i, initializationData[j][i]);
+            System.arraycopy(initializationData[i], 0,
+                    data, i * SIZE, SIZE);
+        }
+        assert allValid(data);
+        dataChanged();
+    }
+
+    /** Sets all cells to the given values.
+     * @param initializationData the cell values in row-major order.
+     */
+    final void setAll(final byte[] initializationData) {
+        assert initializationData.length == TOTAL_FIELDS;
+        System.arraycopy(initializationData, 0, data, 0, TOTAL_FIELDS);
+        assert allValid(data);
+        dataChanged();
+    }
+
+    /** Overwrites all cells without calling {@link #dataChanged()}.
+     * Callers are responsible for restoring derived state.
+     * @param source the cell values in row-major order.
+     * @param offset the index of the first cell in the source.
+     */
+    final void copyFrom(final byte[] source, final int offset) {
+        System.arraycopy(source, offset, data, 0, TOTAL_FIELDS);
+    }
+
+    /** Called after all cells were changed without {@link #set}.
+     * Subclasses keeping derived state recalculate it here.
+     */
+    protected void dataChanged() {
+    }
+
+    /** Checks that all values are valid cell values.
+     * @param values the values to check.
+     * @return {@code true} if all values are valid.
+     */
+    private static boolean allValid(final byte[] values) {
+        for (byte value : values) {
+            if (!validValue(value)) {
+                return false;
             }
         }
+        return true;
     }
 
     /** Gets a copy of the given row.
@@ -65,7 +176,7 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
      */
     protected final void row(final int index, final byte[] target) {
         assert target.length == SIZE;
-        System.arraycopy(data[index], 0, target, 0, SIZE);
+        System.arraycopy(data, index * SIZE, target, 0, SIZE);
     }
 
     /** Gets a copy of the given column.
@@ -74,9 +185,7 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
      */
     protected final void column(final int index, final byte[] target) {
         assert target.length == SIZE;
-        for (int i = 0; i < SIZE; i++) {
-            target[i] = data[i][index];
-        }
+        unit(SIZE + index, target);
     }
 
     /** Gets a copy of the given block.
@@ -89,13 +198,17 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
             final byte[] target) {
         assert target.length == SIZE;
         assert validCoords(row, column);
-        int k = 0; // target index
-        int roundRow = roundToBlock(row);
-        int roundColumn = roundToBlock(column);
-        for (int i = 0; i < BLOCK_SIZE; i++) {
-            for (int j = 0; j < BLOCK_SIZE; j++) {
-                target[k++] = data[roundRow + i][roundColumn + j];
-            }
+        unit(2 * SIZE + blockOf(row, column), target);
+    }
+
+    /** Gets a copy of the given unit.
+     * @param unit the unit index, see {@link #UNITS}.
+     * @param target a 9-element array to receive the unit data.
+     */
+    private void unit(final int unit, final byte[] target) {
+        int[] cells = UNITS[unit];
+        for (int i = 0; i < SIZE; i++) {
+            target[i] = data[cells[i]];
         }
     }
 
@@ -104,11 +217,8 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
      */
     @Override
     public final void clear() {
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                set(j, i, UNSET);
-            }
-        }
+        Arrays.fill(data, UNSET);
+        dataChanged();
     }
 
     /**
@@ -120,7 +230,7 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
     @Override
     public final byte get(final int row, final int column) {
         assert validCoords(row, column);
-        return data[row][column];
+        return data[indexOf(row, column)];
     }
 
     /**
@@ -134,7 +244,7 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
         assert validCoords(row, column);
         assert validValue(value)
                 : "Value out of range: " + value;
-        data[row][column] = value;
+        data[indexOf(row, column)] = value;
     }
 
     /**
@@ -145,12 +255,10 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
     @Override
     public int getSetCount() {
         int count = 0;
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                assert validValue(data[i][j]);
-                if (data[i][j] != UNSET) {
-                    count++;
-                }
+        for (byte datum : data) {
+            assert validValue(datum);
+            if (datum != UNSET) {
+                count++;
             }
         }
         assert count >= 0 && count <= TOTAL_FIELDS;
@@ -164,7 +272,19 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
      */
     @Override
     public final byte[][] getArray() {
-        return QuadraticArrays.cloneArray(data);
+        byte[][] result = new byte[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            System.arraycopy(data, i * SIZE, result[i], 0, SIZE);
+        }
+        return result;
+    }
+
+    /** Gets a copy of the cells in row-major order.
+     * @param target an array to receive the 81 cell values.
+     * @param offset the index of the first cell in the target.
+     */
+    final void getAll(final byte[] target, final int offset) {
+        System.arraycopy(data, 0, target, offset, TOTAL_FIELDS);
     }
 
     @Override
@@ -174,7 +294,7 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(this.data);
+        return Arrays.hashCode(this.data);
     }
 
     @Override
@@ -189,7 +309,7 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
             return false;
         }
         final GameMatrixImpl other = (GameMatrixImpl) obj;
-        return Arrays.deepEquals(this.data, other.data);
+        return Arrays.equals(this.data, other.data);
     }
 
     @Override
@@ -197,7 +317,7 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
         GameMatrixImpl clone;
         try {
             clone = (GameMatrixImpl) super.clone();
-            clone.data = QuadraticArrays.cloneArray(data);
+            clone.data = data.clone();
         } catch (CloneNotSupportedException ex) {
             throw new IllegalStateException();
         }
@@ -205,29 +325,30 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
         return clone;
     }
 
-    /** Finds the duplicate bits.
-     * @param data the cell data from 0-9.
-     * @return a mask with bits 1-9 set if the numbers 1-9 occur multiple times.
+    /** Finds the duplicate bits in a unit.
+     * @param unit the unit index, see {@link #UNITS}.
+     * @return a mask with bits 1-9 set if the numbers 1-9 occur multiple
+     * times.
      */
-    protected static int findDuplicateBits(final byte[] data) {
+    private int findDuplicateBits(final int unit) {
         int currentMask = 0;
         int duplicates = 0;
-        for (byte datum : data) {
-            final int shifted = 1 << datum;
+        for (int cell : UNITS[unit]) {
+            final int shifted = 1 << data[cell];
             duplicates |= currentMask & shifted;
             currentMask |= shifted;
         }
         return duplicates & (~1);
     }
 
-    /** Finds the used numbers.
-     * @param data the cell data from 0-9.
+    /** Finds the used numbers in a unit.
+     * @param unit the unit index, see {@link #UNITS}.
      * @return a mask with bits 1-9 set if the numbers 1-9 occur.
      */
-    protected static int getNumberMask(final byte[] data) {
+    private int getNumberMask(final int unit) {
         int currentMask = 0;
-        for (byte datum : data) {
-            currentMask |= 1 << datum;
+        for (int cell : UNITS[unit]) {
+            currentMask |= 1 << data[cell];
         }
         // mask out UNSET (1 == 1<<0)
         return currentMask & (~1);
@@ -240,28 +361,12 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
      */
     @Override
     public final boolean isValid() {
-        boolean result = true;
-
-        byte[] tmpData = new byte[GameMatrix.SIZE];
-
-        for (int i = 0; i < SIZE && result; i++) {
-            row(i, tmpData);
-            result &= findDuplicateBits(tmpData) == 0;
-        }
-
-        for (int i = 0; i < SIZE && result; i++) {
-            column(i, tmpData);
-            result &= findDuplicateBits(tmpData) == 0;
-        }
-
-        for (int i = 0; i < SIZE && result; i += BLOCK_SIZE) {
-            for (int j = 0; j < SIZE && result; j += BLOCK_SIZE) {
-                block(i, j, tmpData);
-                result &= findDuplicateBits(tmpData) == 0;
+        for (int unit = 0; unit < UNIT_COUNT; unit++) {
+            if (findDuplicateBits(unit) != 0) {
+                return false;
             }
         }
-
-        return result;
+        return true;
     }
 
     /** Gets the free mask for the given row.
@@ -271,9 +376,7 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
      * is not used.
      */
     protected int getRowFreeMask(final int row) {
-        byte[] tmpData = new byte[GameMatrix.SIZE];
-        row(row, tmpData);
-        return (~getNumberMask(tmpData)) & MASK_FOR_NINE_BITS;
+        return (~getNumberMask(row)) & MASK_FOR_NINE_BITS;
     }
 
     /** Gets the free mask for the given column.
@@ -283,9 +386,7 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
      * is not used.
      */
     protected int getColumnFreeMask(final int column) {
-        byte[] tmpData = new byte[GameMatrix.SIZE];
-        column(column, tmpData);
-        return (~getNumberMask(tmpData)) & MASK_FOR_NINE_BITS;
+        return (~getNumberMask(SIZE + column)) & MASK_FOR_NINE_BITS;
     }
 
     /** Gets the free mask for the given block.
@@ -296,10 +397,8 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
      * is not used.
      */
     protected int getBlockFreeMask(final int row, final int column) {
-        byte[] tmpData = new byte[GameMatrix.BLOCK_SIZE
-                * GameMatrix.BLOCK_SIZE];
-        block(row, column, tmpData);
-        return (~getNumberMask(tmpData)) & MASK_FOR_NINE_BITS;
+        return (~getNumberMask(2 * SIZE + blockOf(row, column)))
+                & MASK_FOR_NINE_BITS;
     }
 
     /** Gets the free mask for the given cell.
@@ -313,12 +412,14 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
     public int getFreeMask(
             final int row,
             final int column) {
-        int free = MASK_FOR_NINE_BITS;
         assert validCoords(row, column);
-        free &= getRowFreeMask(row);
-        free &= getColumnFreeMask(column);
-        free &= getBlockFreeMask(row, column);
-        return free;
+        int index = indexOf(row, column);
+        // the cell itself is part of its row, column and block
+        int used = 1 << data[index];
+        for (int peer : PEERS[index]) {
+            used |= 1 << data[peer];
+        }
+        return (~used) & MASK_FOR_NINE_BITS;
     }
 
     /**
@@ -345,12 +446,4 @@ class GameMatrixImpl implements Cloneable, BitFreeMatrixInterface {
         int free = getFreeMask(row, column);
         return (free & (1 << value)) != 0;
     }
-
-    /** Round the given column/row to the next block boundary.
-     * @param in the column/row index to round.
-     * @return a row/column index at a block boundary.
-     */
-    protected static int roundToBlock(final int in) {
-        return in - in % BLOCK_SIZE;
-    }
 }
@@ -0,0 +1,92 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * A snapshot of the progress of a {@link RiddleGenerator} run.
+ * @author Stephan Fuhrmann
+ */
+public final class GenerationProgress {
+
+    /** Nanoseconds per second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** The number of riddles written. */
+    private final long count;
+
+    /** The sum of the clues of all riddles written. */
+    private final long totalClues;
+
+    /** The nanoseconds elapsed since the start of the run. */
+    private final long elapsedNanos;
+
+    /** Creates a new snapshot.
+     * @param inCount the number of riddles written.
+     * @param inTotalClues the sum of the clues of all riddles written.
+     * @param inElapsedNanos the nanoseconds elapsed since the start.
+     */
+    GenerationProgress(final long inCount,
+            final long inTotalClues,
+            final long inElapsedNanos) {
+        count = inCount;
+        totalClues = inTotalClues;
+        elapsedNanos = inElapsedNanos;
+    }
+
+    /** Get the number of riddles written.
+     * @return the number of riddles written.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /** Get the time elapsed since the start of the run.
+     * @return the elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Get the average number of riddles written per second.
+     * @return the riddles per second, or 0 if no time elapsed.
+     */
+    public double getRiddlesPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return count * NANOS_PER_SECOND / elapsedNanos;
+    }
+
+    /** Get the average number of clues of the riddles written.
+     * @return the average clue count, or 0 if no riddles were written.
+     */
+    public double getAverageClues() {
+        if (count == 0) {
+            return 0;
+        }
+        return (double) totalClues / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d riddles, %.1f riddles/s, %.2f clues avg",
+                count, getRiddlesPerSecond(), getAverageClues());
+    }
+}
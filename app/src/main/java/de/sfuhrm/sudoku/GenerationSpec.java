@@ -0,0 +1,200 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * Describes which riddles {@link Creator} shall create.
+ * A spec narrows the clue count and the difficulty of the riddles
+ * and limits the effort spent on creating them.
+ * Candidates missing the target are dropped, the outcome is
+ * recorded in the {@link #getStatistics() statistics}.
+ * <p>
+ * The setters are not synchronized. Set a spec up completely before
+ * creating riddles with it, and do not change it afterwards.
+ * Other threads see the set up spec if they receive it after the
+ * last setter call through a happens-before edge, like
+ * {@link Thread#start()}, an executor or a concurrent collection.
+ * {@link RiddleGenerator} and {@link RiddlePool} pass the spec on that
+ * way when they start their threads. The statistics are thread safe.
+ * @see Creator#createRiddle(GenerationSpec)
+ * @author Stephan Fuhrmann
+ */
+public final class GenerationSpec {
+
+    /** The default maximum time for creating one riddle
+     * in milliseconds. */
+    public static final long DEFAULT_TIME_LIMIT = 60_000;
+
+    /** No riddle with fewer clues has exactly one solution. */
+    public static final int MINIMUM_UNIQUE_CLUES = 17;
+
+    /** The minimum number of clues. */
+    private int minimumClues;
+
+    /** The maximum number of clues. */
+    private int maximumClues;
+
+    /** The minimum difficulty. */
+    private int minimumDifficulty;
+
+    /** The maximum difficulty. */
+    private int maximumDifficulty;
+
+    /** The maximum number of search nodes per uniqueness check. */
+    private long nodeLimit;
+
+    /** The maximum time for creating one riddle in milliseconds. */
+    private long timeLimit;
+
+    /** The outcome counters of riddles created with this spec. */
+    private final GenerationStatistics statistics;
+
+    /**
+     * Creates a spec accepting every riddle.
+     */
+    public GenerationSpec() {
+        minimumClues = 0;
+        maximumClues = GameMatrix.TOTAL_FIELDS;
+        minimumDifficulty = 0;
+        maximumDifficulty = Integer.MAX_VALUE;
+        nodeLimit = RiddleReducer.DEFAULT_NODE_LIMIT;
+        timeLimit = DEFAULT_TIME_LIMIT;
+        statistics = new GenerationStatistics();
+    }
+
+    /** Set the range of clues the riddles shall have.
+     * Clearing stops at the minimum, candidates that can not
+     * get down to the maximum are aborted early.
+     * @param minimum the minimum number of clues.
+     * @param maximum the maximum number of clues.
+     * @throws IllegalArgumentException if the range is empty,
+     * out of bounds or ends below {@link #MINIMUM_UNIQUE_CLUES}.
+     */
+    public void setClueRange(final int minimum, final int maximum) {
+        if (minimum < 0 || maximum > GameMatrix.TOTAL_FIELDS
+                || minimum > maximum || maximum < MINIMUM_UNIQUE_CLUES) {
+            throw new IllegalArgumentException(
+                    "Illegal clue range: " + minimum + ".." + maximum);
+        }
+        this.minimumClues = minimum;
+        this.maximumClues = maximum;
+    }
+
+    /** Set the range of difficulty the riddles shall have.
+     * The difficulty is the number of guesses a solver needs
+     * when always filling the cell with the fewest candidates.
+     * A difficulty of 0 means the riddle is solvable by
+     * filling in naked singles only.
+     * @param minimum the minimum difficulty.
+     * @param maximum the maximum difficulty.
+     * @throws IllegalArgumentException if the range is empty or
+     * negative.
+     */
+    public void setDifficultyRange(final int minimum, final int maximum) {
+        if (minimum < 0 || minimum > maximum) {
+            throw new IllegalArgumentException(
+                    "Illegal difficulty range: " + minimum + ".." + maximum);
+        }
+        this.minimumDifficulty = minimum;
+        this.maximumDifficulty = maximum;
+    }
+
+    /** Set the maximum number of search nodes per uniqueness check.
+     * Cells whose check exceeds the limit are kept as clues.
+     * @param set the new limit.
+     */
+    public void setNodeLimit(final long set) {
+        if (set <= 0) {
+            throw new IllegalArgumentException(
+                    "Node limit must be positive: " + set);
+        }
+        this.nodeLimit = set;
+    }
+
+    /** Set the maximum time for creating one riddle.
+     * Creation gives up after this time, since a spec may be
+     * impossible to meet. Defaults to {@link #DEFAULT_TIME_LIMIT}.
+     * @param millis the time limit in milliseconds.
+     */
+    public void setTimeLimit(final long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException(
+                    "Time limit must be positive: " + millis);
+        }
+        this.timeLimit = millis;
+    }
+
+    /** Get the minimum number of clues.
+     * @return the minimum number of clues.
+     */
+    public int getMinimumClues() {
+        return minimumClues;
+    }
+
+    /** Get the maximum number of clues.
+     * @return the maximum number of clues.
+     */
+    public int getMaximumClues() {
+        return maximumClues;
+    }
+
+    /** Get the minimum difficulty.
+     * @return the minimum difficulty.
+     */
+    public int getMinimumDifficulty() {
+        return minimumDifficulty;
+    }
+
+    /** Get the maximum difficulty.
+     * @return the maximum difficulty.
+     */
+    public int getMaximumDifficulty() {
+        return maximumDifficulty;
+    }
+
+    /** Whether a difficulty range was set.
+     * @return {@code true} if the difficulty needs to be rated.
+     */
+    boolean hasDifficultyRange() {
+        return minimumDifficulty != 0
+                || maximumDifficulty != Integer.MAX_VALUE;
+    }
+
+    /** Get the maximum number of search nodes per uniqueness check.
+     * @return the node limit.
+     */
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /** Get the maximum time for creating one riddle.
+     * @return the time limit in milliseconds.
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /** Get the outcome counters of riddles created with this spec.
+     * @return the statistics, updated while creating riddles.
+     */
+    public GenerationStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the outcome of riddle candidates created for a
+ * {@link GenerationSpec}. The counters can be updated from
+ * multiple threads.
+ * @author Stephan Fuhrmann
+ */
+public final class GenerationStatistics {
+
+    /** The number of candidates started. */
+    private final AtomicLong candidates = new AtomicLong();
+
+    /** The number of candidates accepted. */
+    private final AtomicLong accepted = new AtomicLong();
+
+    /** The number of candidates aborted because of too many clues. */
+    private final AtomicLong abortedEarly = new AtomicLong();
+
+    /** The number of candidates rejected because of their difficulty. */
+    private final AtomicLong rejectedDifficulty = new AtomicLong();
+
+    /** Creates new zeroed statistics. */
+    GenerationStatistics() {
+    }
+
+    /** Counts a started candidate. */
+    void countCandidate() {
+        candidates.incrementAndGet();
+    }
+
+    /** Counts an accepted candidate. */
+    void countAccepted() {
+        accepted.incrementAndGet();
+    }
+
+    /** Counts a candidate that could not reach the clue target. */
+    void countAbortedEarly() {
+        abortedEarly.incrementAndGet();
+    }
+
+    /** Counts a candidate outside of the difficulty range. */
+    void countRejectedDifficulty() {
+        rejectedDifficulty.incrementAndGet();
+    }
+
+    /** Get the number of candidates started.
+     * @return the number of candidates.
+     */
+    public long getCandidates() {
+        return candidates.get();
+    }
+
+    /** Get the number of candidates accepted.
+     * @return the number of riddles returned.
+     */
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    /** Get the number of candidates aborted because they could not
+     * get down to the maximum number of clues.
+     * @return the number of early aborts.
+     */
+    public long getAbortedEarly() {
+        return abortedEarly.get();
+    }
+
+    /** Get the number of candidates rejected because of their difficulty.
+     * @return the number of difficulty rejects.
+     */
+    public long getRejectedDifficulty() {
+        return rejectedDifficulty.get();
+    }
+
+    /** Get the ratio of accepted to started candidates.
+     * @return the acceptance rate between 0 and 1, or 0 if no
+     * candidates were started.
+     */
+    public double getAcceptanceRate() {
+        long started = candidates.get();
+        if (started == 0) {
+            return 0;
+        }
+        return (double) accepted.get() / started;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d candidates, %d accepted (%.2f%%), "
+                + "%d aborted early, %d rejected by difficulty",
+                getCandidates(), getAccepted(),
+                getAcceptanceRate() * 100,
+                getAbortedEarly(), getRejectedDifficulty());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import static de.sfuhrm.sudoku.GameMatrix.BLOCK_SIZE;
+import static de.sfuhrm.sudoku.GameMatrix.SIZE;
+import static de.sfuhrm.sudoku.GameMatrix.TOTAL_FIELDS;
+import static de.sfuhrm.sudoku.GameMatrix.UNSET;
+
+import java.util.Arrays;
+
+/**
+ * Calculates 64 bit fingerprints of game matrices for use with
+ * a {@link FingerprintIndex}.
+ * <br>
+ * The {@link #exact(GameMatrix) exact} fingerprint changes with every
+ * cell. The {@link #invariant(GameMatrix) invariant} fingerprint stays
+ * the same when a matrix is transformed by one of the sudoku
+ * symmetries, so a riddle and all of its variants share one
+ * fingerprint.
+ * @author Stephan Fuhrmann
+ */
+public final class GridFingerprint {
+
+    /** The number of refinement rounds of the invariant fingerprint. */
+    private static final int ROUNDS = 3;
+
+    /** The color of cells that are not set. */
+    private static final long UNSET_COLOR = 0x2545F4914F6CDD1DL;
+
+    /** Salt for the row and column neighbourhood. */
+    private static final long LINE_SALT = 0x9E3779B97F4A7C15L;
+
+    /** Salt for the block neighbourhood. */
+    private static final long BLOCK_SALT = 0xBF58476D1CE4E5B9L;
+
+    /** Salt for the cells with the same value. */
+    private static final long VALUE_SALT = 0x94D049BB133111EBL;
+
+    /** Weight of a rectangle covering exactly two blocks. */
+    private static final int TWO_BLOCK_RECTANGLE = 1;
+
+    /** Weight of a rectangle covering four blocks. */
+    private static final int FOUR_BLOCK_RECTANGLE = 1 << 8;
+
+    /** No instances. */
+    private GridFingerprint() {
+    }
+
+    /** Calculates a fingerprint of the exact cell values.
+     * Equal matrices have equal fingerprints.
+     * @param matrix the matrix to calculate the fingerprint of.
+     * @return the fingerprint, same as
+     * {@link FrozenGameMatrix#getFingerprint()}.
+     */
+    public static long exact(final GameMatrix matrix) {
+        return FrozenGameMatrix.freeze(matrix).getFingerprint();
+    }
+
+    /** Calculates a fingerprint that is invariant under the sudoku
+     * symmetries. Relabeling the numbers, transposing, swapping bands
+     * or stacks and swapping rows or columns within a band or stack
+     * does not change the fingerprint.
+     * <br>
+     * The fingerprint is not a canonical form. Every cell gets a color
+     * from its set state and the number of
+     * rectangles {@code a b / b a} it is a corner of. The colors are
+     * then refined a few rounds with the colors of the cells sharing a
+     * row, column, block or value with it. Riddles that are not
+     * equivalent can therefore share a fingerprint. This is rare for
+     * riddles, but more likely for full grids, where every cell has
+     * the same neighbourhood and only the rectangles make a
+     * difference.
+     * @param matrix the matrix to calculate the fingerprint of.
+     * @return the fingerprint.
+     */
+    public static long invariant(final GameMatrix matrix) {
+        byte[] cells = new byte[TOTAL_FIELDS];
+        if (matrix instanceof GameMatrixImpl) {
+            ((GameMatrixImpl) matrix).getAll(cells, 0);
+        } else {
+            for (int i = 0; i < TOTAL_FIELDS; i++) {
+                cells[i] = matrix.get(i / SIZE, i % SIZE);
+            }
+        }
+
+        int[] rectangles = new int[TOTAL_FIELDS];
+        countRectangles(cells, rectangles);
+
+        long[] colors = new long[TOTAL_FIELDS];
+        for (int i = 0; i < TOTAL_FIELDS; i++) {
+            colors[i] = cells[i] == UNSET
+                    ? UNSET_COLOR : mix(rectangles[i] + 1);
+        }
+
+        long[] unitSums = new long[GameMatrixImpl.UNIT_COUNT];
+        long[] valueSums = new long[SIZE + 1];
+        long[] next = new long[TOTAL_FIELDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int unit = 0; unit < unitSums.length; unit++) {
+                long sum = 0;
+                for (int i : GameMatrixImpl.UNITS[unit]) {
+                    sum += colors[i];
+                }
+                unitSums[unit] = sum;
+            }
+            Arrays.fill(valueSums, 0);
+            for (int i = 0; i < TOTAL_FIELDS; i++) {
+                valueSums[cells[i]] += colors[i];
+            }
+
+            for (int i = 0; i < TOTAL_FIELDS; i++) {
+                int row = i / SIZE;
+                int column = i % SIZE;
+                long self = colors[i];
+                long rows = unitSums[row] - self;
+                long columns = unitSums[SIZE + column] - self;
+                long block = unitSums[2 * SIZE
+                        + GameMatrixImpl.blockOf(row, column)] - self;
+                long value = cells[i] == UNSET
+                        ? 0 : valueSums[cells[i]] - self;
+                // rows and columns are added up so that transposing
+                // gives the same color
+                next[i] = mix(self
+                        + (mix(rows ^ LINE_SALT) + mix(columns ^ LINE_SALT))
+                        + 3 * mix(block ^ BLOCK_SALT)
+                        + 5 * mix(value ^ VALUE_SALT));
+            }
+            long[] tmp = colors;
+            colors = next;
+            next = tmp;
+        }
+
+        long sum = 0;
+        for (long color : colors) {
+            sum += mix(color);
+        }
+        return mix(sum);
+    }
+
+    /** Counts the rectangles {@code a b / b a} per cell.
+     * Rectangles covering two blocks are counted apart from
+     * rectangles covering four blocks.
+     * @param cells the cells in row-major order.
+     * @param counts receives the weighted count per cell.
+     */
+    private static void countRectangles(final byte[] cells,
+            final int[] counts) {
+        for (int row1 = 0; row1 < SIZE; row1++) {
+            for (int row2 = row1 + 1; row2 < SIZE; row2++) {
+                boolean sameBand = row1 / BLOCK_SIZE
+                        == row2 / BLOCK_SIZE;
+                for (int column1 = 0; column1 < SIZE; column1++) {
+                    byte a = cells[row1 * SIZE + column1];
+                    if (a == UNSET
+                            || cells[row2 * SIZE + column1] == UNSET) {
+                        continue;
+                    }
+                    for (int column2 = column1 + 1; column2 < SIZE;
+                            column2++) {
+                        byte b = cells[row1 * SIZE + column2];
+                        if (b == UNSET || b == a
+                                || cells[row2 * SIZE + column1] != b
+                                || cells[row2 * SIZE + column2] != a) {
+                            continue;
+                        }
+                        boolean sameStack =
+                                column1 / BLOCK_SIZE == column2 / BLOCK_SIZE;
+                        int weight = sameBand || sameStack
+                                ? TWO_BLOCK_RECTANGLE
+                                : FOUR_BLOCK_RECTANGLE;
+                        counts[row1 * SIZE + column1] += weight;
+                        counts[row1 * SIZE + column2] += weight;
+                        counts[row2 * SIZE + column1] += weight;
+                        counts[row2 * SIZE + column2] += weight;
+                    }
+                }
+            }
+        }
+    }
+
+    /** The MurmurHash3 64 bit finalizer.
+     * @param value the value to mix.
+     * @return the mixed value.
+     */
+    static long mix(final long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Searches riddles with few clues by local moves.
+ * The search starts with a maximally cleared riddle. Every move sets
+ * one or two cleared cells back to their solution value and then
+ * clears as many clues as possible in random order. A move that ends
+ * with more clues than before is undone from a snapshot, so the search
+ * walks over minimal riddles and keeps the one with the fewest clues.
+ * <br>Example usage:
+ * <br>
+ * <code>
+ *  LowClueSearch search = new LowClueSearch(new Random());<br>
+ *  search.setTimeLimit(60_000);<br>
+ *  search.setTargetClues(20);<br>
+ *  Riddle riddle = search.search(Creator.createFull());<br>
+ * </code>
+ * @author Stephan Fuhrmann
+ */
+public final class LowClueSearch {
+
+    /** The default search time in milliseconds. */
+    public static final long DEFAULT_TIME_LIMIT = 10_000;
+
+    /** The random number generator. */
+    private final Random random;
+
+    /** The maximum number of search nodes per uniqueness check. */
+    private long nodeLimit;
+
+    /** The maximum search time in milliseconds. */
+    private long timeLimit;
+
+    /** The clue count to stop the search at. */
+    private int targetClues;
+
+    /** The receiver of improvements, or {@code null}. */
+    private Consumer<SearchProgress> progressListener;
+
+    /** The improvements of the last search. */
+    private final List<SearchProgress> history;
+
+    /**
+     * Creates a search.
+     * @param inRandom the random number generator to use.
+     */
+    public LowClueSearch(final Random inRandom) {
+        random = Objects.requireNonNull(inRandom, "inRandom is null");
+        nodeLimit = RiddleReducer.DEFAULT_NODE_LIMIT;
+        timeLimit = DEFAULT_TIME_LIMIT;
+        targetClues = 0;
+        history = new ArrayList<>();
+    }
+
+    /** Set the maximum number of search nodes per uniqueness check.
+     * Clues whose check exceeds the limit are kept.
+     * @param set the new limit.
+     */
+    public void setNodeLimit(final long set) {
+        if (set <= 0) {
+            throw new IllegalArgumentException(
+                    "Node limit must be positive: " + set);
+        }
+        this.nodeLimit = set;
+    }
+
+    /** Set the maximum time of a search.
+     * @param millis the time limit in milliseconds.
+     */
+    public void setTimeLimit(final long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException(
+                    "Time limit must be positive: " + millis);
+        }
+        this.timeLimit = millis;
+    }
+
+    /** Set the clue count to stop the search at.
+     * @param set the number of clues that is good enough.
+     */
+    public void setTargetClues(final int set) {
+        this.targetClues = set;
+    }
+
+    /** Set the receiver of improvements. The receiver is called
+     * on the searching thread every time a riddle with fewer clues
+     * was found.
+     * @param listener the receiver, or {@code null} for no reports.
+     */
+    public void setProgressListener(
+            final Consumer<SearchProgress> listener) {
+        this.progressListener = listener;
+    }
+
+    /** Get the improvements of the last search.
+     * @return the snapshots taken whenever a riddle with fewer clues
+     * was found, in the order they were found.
+     */
+    public List<SearchProgress> getHistory() {
+        return Collections.unmodifiableList(history);
+    }
+
+    /**
+     * Searches a riddle with few clues for the given solution.
+     * @param fullMatrix a fully set up (solved) and valid sudoku.
+     * @return the riddle with the fewest clues found within the
+     * time limit.
+     */
+    public Riddle search(final GameMatrix fullMatrix) {
+        history.clear();
+        long start = System.currentTimeMillis();
+        RiddleReducer cur = new RiddleReducer(fullMatrix);
+        cur.setNodeLimit(nodeLimit);
+
+        int[] cells = new int[GameMatrix.TOTAL_FIELDS];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = i;
+        }
+
+        SnapshotStack snapshots = new SnapshotStack(1);
+        long moves = 0;
+        clearAll(cur, cells);
+        Riddle best = cur.toRiddle();
+        improved(start, best.getSetCount(), moves, cur);
+
+        while (best.getSetCount() > targetClues
+                && System.currentTimeMillis() - start < timeLimit) {
+            int clues = cur.getSetCount();
+            cur.save(snapshots);
+            int restore = 1 + random.nextInt(2);
+            shuffle(cells);
+            for (int i = 0; i < cells.length && restore > 0; i++) {
+                int row = cells[i] / GameMatrix.SIZE;
+                int column = cells[i] % GameMatrix.SIZE;
+                if (cur.get(row, column) == GameMatrix.UNSET) {
+                    cur.restore(row, column);
+                    restore--;
+                }
+            }
+            clearAll(cur, cells);
+            moves++;
+
+            if (cur.getSetCount() > clues) {
+                // worse than before the move, undo it
+                cur.rollback(snapshots);
+                continue;
+            }
+            snapshots.drop();
+            if (cur.getSetCount() < best.getSetCount()) {
+                best = cur.toRiddle();
+                improved(start, best.getSetCount(), moves, cur);
+            }
+        }
+        return best;
+    }
+
+    /** Clears as many clues as possible in random order.
+     * @param cur the riddle to clear clues in.
+     * @param cells the cell indices to shuffle and visit.
+     */
+    private void clearAll(final RiddleReducer cur, final int[] cells) {
+        shuffle(cells);
+        for (int cell : cells) {
+            int row = cell / GameMatrix.SIZE;
+            int column = cell % GameMatrix.SIZE;
+            if (cur.get(row, column) != GameMatrix.UNSET) {
+                cur.tryClear(row, column);
+            }
+        }
+    }
+
+    /** Shuffles the given array in place.
+     * @param cells the array to shuffle.
+     */
+    private void shuffle(final int[] cells) {
+        for (int i = cells.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = cells[i];
+            cells[i] = cells[j];
+            cells[j] = tmp;
+        }
+    }
+
+    /** Records an improvement.
+     * @param start the start time of the search in milliseconds.
+     * @param clues the clue count of the new best riddle.
+     * @param moves the number of moves done.
+     * @param cur the reducer of the search.
+     */
+    private void improved(final long start,
+            final int clues,
+            final long moves,
+            final RiddleReducer cur) {
+        SearchProgress progress = new SearchProgress(
+                System.currentTimeMillis() - start,
+                clues, moves, cur.getChecks(), cur.getExhaustedChecks());
+        history.add(progress);
+        if (progressListener != null) {
+            progressListener.accept(progress);
+        }
+    }
+}
@@ -0,0 +1,488 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import static de.sfuhrm.sudoku.GameMatrix.validCoords;
+import static de.sfuhrm.sudoku.GameMatrix.validValue;
+import de.sfuhrm.sudoku.output.GameMatrixSink;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Stores many game matrices in a few flat arrays.
+ * Every matrix occupies a slot of {@link GameMatrix#TOTAL_FIELDS} bytes
+ * in row-major order in one shared array, so a batch has a constant
+ * overhead instead of several objects per matrix. Optionally every slot
+ * has a solution and a {@code long} of metadata in parallel arrays.
+ * Slots can be accessed as copies, as flat bytes, as
+ * {@link SolutionCodec} bytes or through
+ * {@link #view(int) views} that read and write the batch directly.
+ * @author Stephan Fuhrmann
+ */
+public final class PuzzleBatch {
+
+    /** The cells of all slots. */
+    private final byte[] cells;
+
+    /** The solutions of all slots, or {@code null}. */
+    private final byte[] solutions;
+
+    /** The metadata of all slots, or {@code null}. */
+    private final long[] metadata;
+
+    /** The number of slots in use. */
+    private int size;
+
+    /**
+     * Creates an empty batch.
+     * @param capacity the maximum number of matrices.
+     * @param withSolutions whether to store a solution per slot.
+     * @param withMetadata whether to store metadata per slot.
+     * @throws IllegalArgumentException if the capacity is negative or
+     * too big for one array.
+     */
+    public PuzzleBatch(final int capacity,
+            final boolean withSolutions,
+            final boolean withMetadata) {
+        if (capacity < 0
+                || capacity > Integer.MAX_VALUE / GameMatrix.TOTAL_FIELDS) {
+            throw new IllegalArgumentException(
+                    "Illegal capacity: " + capacity);
+        }
+        cells = new byte[capacity * GameMatrix.TOTAL_FIELDS];
+        solutions = withSolutions
+                ? new byte[capacity * GameMatrix.TOTAL_FIELDS] : null;
+        metadata = withMetadata ? new long[capacity] : null;
+    }
+
+    /** Get the number of slots in use.
+     * @return the number of matrices added.
+     */
+    public int size() {
+        return size;
+    }
+
+    /** Get the maximum number of slots.
+     * @return the capacity given on creation.
+     */
+    public int capacity() {
+        return cells.length / GameMatrix.TOTAL_FIELDS;
+    }
+
+    /** Get whether solutions are stored.
+     * @return {@code true} if the batch has a solution per slot.
+     */
+    public boolean hasSolutions() {
+        return solutions != null;
+    }
+
+    /** Get whether metadata is stored.
+     * @return {@code true} if the batch has metadata per slot.
+     */
+    public boolean hasMetadata() {
+        return metadata != null;
+    }
+
+    /** Adds a matrix to the next free slot.
+     * @param matrix the matrix to copy into the batch.
+     * @return the slot index of the matrix.
+     * @throws IllegalStateException if the batch is full.
+     */
+    public int add(final GameMatrix matrix) {
+        if (size == capacity()) {
+            throw new IllegalStateException("Batch is full: " + size);
+        }
+        int slot = size++;
+        set(slot, matrix);
+        return slot;
+    }
+
+    /** Adds a matrix with its cells given as bytes to the next free slot.
+     * @param source the cell values in row-major order.
+     * @param offset the index of the first cell in the source.
+     * @return the slot index of the matrix.
+     * @throws IllegalStateException if the batch is full.
+     */
+    public int add(final byte[] source, final int offset) {
+        if (size == capacity()) {
+            throw new IllegalStateException("Batch is full: " + size);
+        }
+        int slot = size++;
+        setCells(slot, source, offset);
+        return slot;
+    }
+
+    /** Checks that a slot is in use.
+     * @param slot the slot index.
+     * @return the offset of the slot in the cell arrays.
+     * @throws IndexOutOfBoundsException if the slot is not in use.
+     */
+    private int offsetOf(final int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Slot " + slot + ", size " + size);
+        }
+        return slot * GameMatrix.TOTAL_FIELDS;
+    }
+
+    /** Overwrites a slot with a matrix.
+     * @param slot the slot index.
+     * @param matrix the matrix to copy into the batch.
+     */
+    public void set(final int slot, final GameMatrix matrix) {
+        copyIn(matrix, cells, offsetOf(slot));
+    }
+
+    /** Overwrites a slot with cells given as bytes.
+     * @param slot the slot index.
+     * @param source the cell values in row-major order.
+     * @param offset the index of the first cell in the source.
+     */
+    public void setCells(final int slot,
+            final byte[] source,
+            final int offset) {
+        System.arraycopy(source, offset, cells, offsetOf(slot),
+                GameMatrix.TOTAL_FIELDS);
+    }
+
+    /** Copies the cells of a slot.
+     * @param slot the slot index.
+     * @param target the array to receive the cell values in row-major
+     * order.
+     * @param offset the index of the first cell in the target.
+     */
+    public void getCells(final int slot,
+            final byte[] target,
+            final int offset) {
+        System.arraycopy(cells, offsetOf(slot), target, offset,
+                GameMatrix.TOTAL_FIELDS);
+    }
+
+    /** Get one cell of a slot.
+     * @param slot the slot index.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return the cell value ranging from 0 to 9.
+     */
+    public byte get(final int slot, final int row, final int column) {
+        assert validCoords(row, column);
+        return cells[offsetOf(slot) + GameMatrixImpl.indexOf(row, column)];
+    }
+
+    /** Creates a copy of a slot.
+     * @param slot the slot index.
+     * @return a new game matrix with the values of the slot.
+     */
+    public GameMatrix copy(final int slot) {
+        GameMatrixImpl result = new GameMatrixImpl();
+        byte[] buffer = new byte[GameMatrix.TOTAL_FIELDS];
+        getCells(slot, buffer, 0);
+        result.setAll(buffer);
+        return result;
+    }
+
+    /** Creates a view of a slot. Reading and writing the view
+     * reads and writes the batch.
+     * @param slot the slot index.
+     * @return a game matrix backed by the slot.
+     */
+    public GameMatrix view(final int slot) {
+        return new SlotView(cells, offsetOf(slot));
+    }
+
+    /** Overwrites the solution of a slot.
+     * @param slot the slot index.
+     * @param solution the solution to copy into the batch.
+     * @throws IllegalStateException if the batch has no solutions.
+     */
+    public void setSolution(final int slot, final GameMatrix solution) {
+        copyIn(solution, requireSolutions(), offsetOf(slot));
+    }
+
+    /** Creates a view of the solution of a slot.
+     * @param slot the slot index.
+     * @return a game matrix backed by the solution of the slot.
+     * All cells are {@link GameMatrix#UNSET unset} if no solution
+     * was stored.
+     * @throws IllegalStateException if the batch has no solutions.
+     */
+    public GameMatrix solutionView(final int slot) {
+        return new SlotView(requireSolutions(), offsetOf(slot));
+    }
+
+    /** Solves a slot and stores the solution.
+     * @param slot the slot index.
+     * @param maxTime the maximum time to solve in milliseconds.
+     * @return {@code true} if a solution was found and stored.
+     * @throws IllegalStateException if the batch has no solutions.
+     */
+    public boolean solve(final int slot, final long maxTime) {
+        requireSolutions();
+        Solver solver = new Solver(view(slot));
+        solver.setLimit(1);
+        List<GameMatrix> result = solver.solve(maxTime);
+        if (result.isEmpty()) {
+            return false;
+        }
+        setSolution(slot, result.get(0));
+        return true;
+    }
+
+    /** Encodes the cells of a slot with {@link SolutionCodec}.
+     * @param slot the slot index of a solved matrix.
+     * @param target the array to write
+     * {@link SolutionCodec#ENCODED_BYTES} bytes to.
+     * @param offset the index of the first byte in {@code target}.
+     * @throws IllegalArgumentException if the slot is not solved
+     * or not valid.
+     */
+    public void encode(final int slot, final byte[] target,
+            final int offset) {
+        SolutionCodec.encode(cells, offsetOf(slot), target, offset);
+    }
+
+    /** Overwrites the cells of a slot with a solution encoded by
+     * {@link SolutionCodec}.
+     * @param slot the slot index.
+     * @param source the array to read the encoded bytes from.
+     * @param offset the index of the first byte in {@code source}.
+     * @throws IllegalArgumentException if the bytes are not an encoded
+     * solution.
+     */
+    public void decode(final int slot, final byte[] source,
+            final int offset) {
+        SolutionCodec.decode(source, offset, cells, offsetOf(slot));
+    }
+
+    /** Encodes the solution of a slot with {@link SolutionCodec}.
+     * @param slot the slot index.
+     * @param target the array to write
+     * {@link SolutionCodec#ENCODED_BYTES} bytes to.
+     * @param offset the index of the first byte in {@code target}.
+     * @throws IllegalStateException if the batch has no solutions.
+     * @throws IllegalArgumentException if no valid solution was stored.
+     */
+    public void encodeSolution(final int slot, final byte[] target,
+            final int offset) {
+        SolutionCodec.encode(requireSolutions(), offsetOf(slot),
+                target, offset);
+    }
+
+    /** Overwrites the solution of a slot with a solution encoded by
+     * {@link SolutionCodec}.
+     * @param slot the slot index.
+     * @param source the array to read the encoded bytes from.
+     * @param offset the index of the first byte in {@code source}.
+     * @throws IllegalStateException if the batch has no solutions.
+     * @throws IllegalArgumentException if the bytes are not an encoded
+     * solution.
+     */
+    public void decodeSolution(final int slot, final byte[] source,
+            final int offset) {
+        SolutionCodec.decode(source, offset, requireSolutions(),
+                offsetOf(slot));
+    }
+
+    /** Get the metadata of a slot.
+     * @param slot the slot index.
+     * @return the metadata value, 0 if never set.
+     * @throws IllegalStateException if the batch has no metadata.
+     */
+    public long getMetadata(final int slot) {
+        return requireMetadata()[slot(slot)];
+    }
+
+    /** Set the metadata of a slot.
+     * @param slot the slot index.
+     * @param value the metadata value, for example a difficulty.
+     * @throws IllegalStateException if the batch has no metadata.
+     */
+    public void setMetadata(final int slot, final long value) {
+        requireMetadata()[slot(slot)] = value;
+    }
+
+    /** Writes a range of slots to a sink. The document start and end
+     * are not written.
+     * @param sink the sink to write to.
+     * @param from the first slot to write, inclusive.
+     * @param to the last slot to write, exclusive.
+     * @throws IOException if the sink fails.
+     */
+    public void writeTo(final GameMatrixSink sink,
+            final int from,
+            final int to) throws IOException {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException(
+                    "Range " + from + ".." + to + ", size " + size);
+        }
+        SlotView view = new SlotView(cells, 0);
+        for (int slot = from; slot < to; slot++) {
+            view.offset = slot * GameMatrix.TOTAL_FIELDS;
+            sink.write(view);
+        }
+    }
+
+    /** Checks that a slot is in use.
+     * @param slot the slot index.
+     * @return the slot index.
+     */
+    private int slot(final int slot) {
+        offsetOf(slot);
+        return slot;
+    }
+
+    /** Get the solution array.
+     * @return the solution array.
+     * @throws IllegalStateException if the batch has no solutions.
+     */
+    private byte[] requireSolutions() {
+        if (solutions == null) {
+            throw new IllegalStateException("Batch has no solutions");
+        }
+        return solutions;
+    }
+
+    /** Get the metadata array.
+     * @return the metadata array.
+     * @throws IllegalStateException if the batch has no metadata.
+     */
+    private long[] requireMetadata() {
+        if (metadata == null) {
+            throw new IllegalStateException("Batch has no metadata");
+        }
+        return metadata;
+    }
+
+    /** Copies a matrix into a flat array.
+     * @param matrix the matrix to copy.
+     * @param target the array to copy to.
+     * @param offset the index of the first cell in the target.
+     */
+    private static void copyIn(final GameMatrix matrix,
+            final byte[] target,
+            final int offset) {
+        if (matrix instanceof GameMatrixImpl) {
+            ((GameMatrixImpl) matrix).getAll(target, offset);
+            return;
+        }
+        int k = offset;
+        for (int row = 0; row < GameMatrix.SIZE; row++) {
+            for (int column = 0; column < GameMatrix.SIZE; column++) {
+                target[k++] = matrix.get(row, column);
+            }
+        }
+    }
+
+    /**
+     * A game matrix reading and writing a slot of a flat array.
+     */
+    private static final class SlotView
+            implements GameMatrix, CellAccessor {
+
+        /** The array holding the slot. */
+        private final byte[] data;
+
+        /** The offset of the slot in the array. */
+        private int offset;
+
+        /** Creates a view.
+         * @param inData the array holding the slot.
+         * @param inOffset the offset of the slot in the array.
+         */
+        SlotView(final byte[] inData, final int inOffset) {
+            data = inData;
+            offset = inOffset;
+        }
+
+        @Override
+        public void clear() {
+            for (int i = 0; i < TOTAL_FIELDS; i++) {
+                data[offset + i] = UNSET;
+            }
+        }
+
+        @Override
+        public byte get(final int row, final int column) {
+            assert validCoords(row, column);
+            return data[offset + GameMatrixImpl.indexOf(row, column)];
+        }
+
+        @Override
+        public void set(final int row, final int column, final byte value) {
+            assert validCoords(row, column);
+            assert validValue(value) : "Value out of range: " + value;
+            data[offset + GameMatrixImpl.indexOf(row, column)] = value;
+        }
+
+        @Override
+        public void setAll(final byte[][] initializationData) {
+            for (int i = 0; i < SIZE; i++) {
+                System.arraycopy(initializationData[i], 0,
+                        data, offset + i * SIZE, SIZE);
+            }
+        }
+
+        @Override
+        public int getSetCount() {
+            int count = 0;
+            for (int i = 0; i < TOTAL_FIELDS; i++) {
+                if (data[offset + i] != UNSET) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public byte[][] getArray() {
+            byte[][] result = new byte[SIZE][SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                System.arraycopy(data, offset + i * SIZE,
+                        result[i], 0, SIZE);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isValid() {
+            return CellAccessor.isValid(this);
+        }
+
+        @Override
+        public boolean canSet(final int row,
+                final int column,
+                final byte value) {
+            assert validCoords(row, column);
+            assert validValue(value);
+            return CellAccessor.canSet(this,
+                    GameMatrixImpl.indexOf(row, column), value);
+        }
+
+        @Override
+        public byte getCell(final int index) {
+            return data[offset + index];
+        }
+
+        @Override
+        public String toString() {
+            return QuadraticArrays.toString(this);
+        }
+    }
+}
@@ -41,4 +41,60 @@ public interface Riddle extends GameMatrix {
      */
     void setWritable(final int row, final int column, final boolean set);
 
+    /**
+     * Get the writability of all cells as a bit mask.
+     * Bit {@code i} of the 81 bit mask stands for the cell
+     * {@code row * 9 + column}. The bits 0 to 63 are in the
+     * first element, the bits 64 to 80 in the lowest bits of
+     * the second element.
+     * @param target a two-element array to receive the mask.
+     * A set bit means the cell is writable.
+     */
+    default void getWritableMask(final long[] target) {
+        target[0] = 0;
+        target[1] = 0;
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                if (getWritable(row, column)) {
+                    int index = row * SIZE + column;
+                    target[index / Long.SIZE] |= 1L << (index % Long.SIZE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the writability of all cells from a bit mask.
+     * @param mask a two-element array with the mask as described in
+     * {@link #getWritableMask(long[])}.
+     */
+    default void setWritableMask(final long[] mask) {
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                int index = row * SIZE + column;
+                setWritable(row, column,
+                        (mask[index / Long.SIZE]
+                                & (1L << (index % Long.SIZE))) != 0);
+            }
+        }
+    }
+
+    /**
+     * Get the unset cells as a bit mask.
+     * @param target a two-element array to receive the mask as described
+     * in {@link #getWritableMask(long[])}. A set bit means the cell is
+     * {@link GameMatrix#UNSET unset}.
+     */
+    default void getUnsetMask(final long[] target) {
+        target[0] = 0;
+        target[1] = 0;
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                if (get(row, column) == UNSET) {
+                    int index = row * SIZE + column;
+                    target[index / Long.SIZE] |= 1L << (index % Long.SIZE);
+                }
+            }
+        }
+    }
 }
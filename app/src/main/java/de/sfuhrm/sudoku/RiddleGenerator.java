@@ -0,0 +1,306 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import de.sfuhrm.sudoku.output.GameMatrixSink;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Creates riddles on multiple threads and writes them to a sink.
+ * Every riddle is a task with its own random stream.
+ * The streams are split off one root stream in task order, and the
+ * riddles are written in task order. A generator created with a seed
+ * therefore writes the same riddles no matter how many threads it runs.
+ * Finished riddles wait in a bounded window for the sink, so workers
+ * block when the sink can not keep up.
+ * @see Creator
+ * @author Stephan Fuhrmann
+ */
+public final class RiddleGenerator {
+
+    /** The default capacity of the hand-over window. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /** The default number of riddles between two progress reports. */
+    public static final int DEFAULT_PROGRESS_INTERVAL = 1000;
+
+    /** Milliseconds to wait for a riddle before checking for failures. */
+    private static final long POLL_MILLIS = 100;
+
+    /** The number of worker threads. */
+    private final int threads;
+
+    /** The root of the task random streams. */
+    private final SplitMix64 root;
+
+    /** The capacity of the hand-over window. */
+    private int queueCapacity;
+
+    /** The number of riddles between two progress reports. */
+    private int progressInterval;
+
+    /** The spec the riddles shall match, or {@code null}. */
+    private GenerationSpec spec;
+
+    /** The receiver of progress reports, or {@code null}. */
+    private Consumer<GenerationProgress> progressListener;
+
+    /** Whether the current run shall stop. */
+    private volatile boolean cancelled;
+
+    /** The riddles finished but not written yet, indexed by task
+     * modulo the capacity. Guarded by itself. */
+    private Riddle[] window;
+
+    /** The index of the next task to issue. Guarded by {@link #root}. */
+    private long nextTask;
+
+    /**
+     * Creates a generator with a random seed.
+     * @param threadCount the number of worker threads.
+     * @throws IllegalArgumentException if the thread count is not positive.
+     */
+    public RiddleGenerator(final int threadCount) {
+        this(threadCount, new Random().nextLong());
+    }
+
+    /**
+     * Creates a generator with the given seed. Generators with the
+     * same seed write the same riddles in the same order.
+     * @param threadCount the number of worker threads.
+     * @param seed the seed of the root random stream.
+     * @throws IllegalArgumentException if the thread count is not positive.
+     */
+    public RiddleGenerator(final int threadCount, final long seed) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException(
+                    "threadCount must be positive: " + threadCount);
+        }
+        threads = threadCount;
+        root = new SplitMix64(seed);
+        queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    }
+
+    /** Set the number of riddles that may be finished ahead of the sink.
+     * @param set the new capacity.
+     */
+    public void setQueueCapacity(final int set) {
+        if (set <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be positive: " + set);
+        }
+        this.queueCapacity = set;
+    }
+
+    /** Set the spec the riddles shall match. Candidates missing
+     * the spec are dropped by the workers.
+     * @param set the spec, or {@code null} for maximally cleared
+     * riddles.
+     */
+    public void setSpec(final GenerationSpec set) {
+        this.spec = set;
+    }
+
+    /** Set the receiver of progress reports. The receiver is called
+     * on the thread running {@link #generate(long, GameMatrixSink)}.
+     * @param listener the receiver, or {@code null} for no reports.
+     * @param interval the number of riddles between two reports.
+     */
+    public void setProgressListener(
+            final Consumer<GenerationProgress> listener,
+            final int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException(
+                    "Interval must be positive: " + interval);
+        }
+        this.progressListener = listener;
+        this.progressInterval = interval;
+    }
+
+    /** Stops the current run. The run writes the document end
+     * and returns after the riddle being written, if any.
+     * The workers are interrupted and drop the riddle they are
+     * reducing, so the run doesn't wait for the time limit of the
+     * {@link #setSpec(GenerationSpec) spec}.
+     * May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Creates riddles and writes them to the sink. Blocks until
+     * all riddles are written or the run was {@link #cancel() cancelled}.
+     * Consecutive runs continue the random stream of the generator.
+     * @param count the number of riddles to create.
+     * @param sink the sink to write the riddles to.
+     * @return the progress at the end of the run.
+     * @throws IOException if the sink fails.
+     * @throws InterruptedException if the calling thread was interrupted.
+     * @throws IllegalStateException if a worker failed with
+     * a checked exception. Unchecked exceptions and errors of workers
+     * are thrown as they are.
+     */
+    public GenerationProgress generate(final long count,
+            final GameMatrixSink sink)
+            throws IOException, InterruptedException {
+        Objects.requireNonNull(sink, "sink is null");
+        cancelled = false;
+        nextTask = 0;
+        window = new Riddle[queueCapacity];
+        Semaphore free = new Semaphore(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "RiddleGenerator");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> work(count, free, failure));
+        }
+
+        long start = System.nanoTime();
+        long written = 0;
+        long totalClues = 0;
+        try {
+            sink.documentStart();
+            while (written < count && !cancelled) {
+                Riddle riddle = take(written);
+                if (riddle == null) {
+                    if (failure.get() != null) {
+                        rethrow(failure.get());
+                    }
+                    continue;
+                }
+                free.release();
+                sink.write(riddle);
+                written++;
+                totalClues += riddle.getSetCount();
+                if (progressListener != null
+                        && written % progressInterval == 0) {
+                    progressListener.accept(new GenerationProgress(
+                            written, totalClues, System.nanoTime() - start));
+                }
+            }
+            sink.documentEnd();
+        } finally {
+            cancelled = true;
+            // interrupts the workers, a spec search stops within one clue
+            pool.shutdownNow();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        return new GenerationProgress(written, totalClues,
+                System.nanoTime() - start);
+    }
+
+    /** Throws the failure of a worker on the calling thread.
+     * @param failure the failure of the worker.
+     */
+    private static void rethrow(final Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IllegalStateException("Worker failed", failure);
+    }
+
+    /** Takes the riddle of a task out of the window.
+     * @param task the index of the task.
+     * @return the riddle, or {@code null} if it was not finished
+     * within the poll time.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    private Riddle take(final long task) throws InterruptedException {
+        int slot = (int) (task % window.length);
+        synchronized (window) {
+            if (window[slot] == null) {
+                window.wait(POLL_MILLIS);
+            }
+            Riddle result = window[slot];
+            window[slot] = null;
+            return result;
+        }
+    }
+
+    /** Creates riddles until enough were issued or the run stops.
+     * @param count the number of riddles to create in total.
+     * @param free permits for free slots in the window.
+     * @param failure receives the first worker failure.
+     */
+    private void work(final long count,
+            final Semaphore free,
+            final AtomicReference<Throwable> failure) {
+        try {
+            while (!cancelled) {
+                free.acquire();
+                long task;
+                SplitMix64 random;
+                synchronized (root) {
+                    if (nextTask >= count) {
+                        return;
+                    }
+                    task = nextTask++;
+                    random = root.split();
+                }
+
+                Riddle riddle = null;
+                while (riddle == null && !cancelled) {
+                    riddle = createRiddle(random);
+                }
+
+                int slot = (int) (task % window.length);
+                synchronized (window) {
+                    window[slot] = riddle;
+                    window.notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            // also errors, the slot of the task would stay empty otherwise
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /** Creates one riddle.
+     * @param random the random number generator to use.
+     * @return a riddle, or {@code null} if the time limit of
+     * the spec was exceeded.
+     */
+    private Riddle createRiddle(final Random random) {
+        if (spec == null) {
+            GameMatrix full = Creator.createFull(random);
+            return Creator.createRiddle(full, random);
+        }
+        return Creator.createRiddle(spec, random);
+    }
+}
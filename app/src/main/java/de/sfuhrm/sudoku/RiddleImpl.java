@@ -27,22 +27,39 @@ package de.sfuhrm.sudoku;
  */
 class RiddleImpl extends GameMatrixImpl implements Cloneable, Riddle {
 
+    /** The number of cells in the second mask word. */
+    private static final int HIGH_BITS = TOTAL_FIELDS - Long.SIZE;
+
+    /** The bits of the second mask word standing for cells. */
+    private static final long HIGH_MASK = (1L << HIGH_BITS) - 1;
+
+    /**
+     * Whether the cells 0 to 63 are writable. Pre-defined cells are only
+     * readable, use settable cells are writable.
+     * @see #getWritableMask(long[])
+     */
+    private long writableLow;
+
     /**
-     * Whether the cell is writable. Pre-defined cells are only readable, use
-     * settable cells are writable.
+     * Whether the cells 64 to 80 are writable.
+     * @see #writableLow
      */
-    private boolean[][] writeable;
+    private long writableHigh;
+
+    /** Whether the cells 0 to 63 are unset. */
+    private long unsetLow;
+
+    /** Whether the cells 64 to 80 are unset. */
+    private long unsetHigh;
 
     /**
      * Creates an empty full-writable riddle.
      */
     RiddleImpl() {
-        writeable = new boolean[SIZE][SIZE];
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                setWritable(i, j, true);
-            }
-        }
+        writableLow = -1L;
+        writableHigh = HIGH_MASK;
+        unsetLow = -1L;
+        unsetHigh = HIGH_MASK;
     }
 
     /**
@@ -53,7 +70,11 @@ class RiddleImpl extends GameMatrixImpl implements Cloneable, Riddle {
      */
     @Override
     public final boolean getWritable(final int row, final int column) {
-        return writeable[row][column];
+        int index = indexOf(row, column);
+        if (index < Long.SIZE) {
+            return (writableLow & (1L << index)) != 0;
+        }
+        return (writableHigh & (1L << (index - Long.SIZE))) != 0;
     }
 
     /**
@@ -66,14 +87,86 @@ class RiddleImpl extends GameMatrixImpl implements Cloneable, Riddle {
     public final void setWritable(final int row,
             final int column,
             final boolean set) {
-        writeable[row][column] = set;
+        int index = indexOf(row, column);
+        if (index < Long.SIZE) {
+            writableLow = setBit(writableLow, index, set);
+        } else {
+            writableHigh = setBit(writableHigh, index - Long.SIZE, set);
+        }
+    }
+
+    @Override
+    public final void getWritableMask(final long[] target) {
+        target[0] = writableLow;
+        target[1] = writableHigh;
+    }
+
+    @Override
+    public final void setWritableMask(final long[] mask) {
+        writableLow = mask[0];
+        writableHigh = mask[1] & HIGH_MASK;
+    }
+
+    @Override
+    public final void getUnsetMask(final long[] target) {
+        target[0] = unsetLow;
+        target[1] = unsetHigh;
+    }
+
+    @Override
+    public final void set(final int row, final int column, final byte value) {
+        super.set(row, column, value);
+        int index = indexOf(row, column);
+        boolean unset = value == UNSET;
+        if (index < Long.SIZE) {
+            unsetLow = setBit(unsetLow, index, unset);
+        } else {
+            unsetHigh = setBit(unsetHigh, index - Long.SIZE, unset);
+        }
+    }
+
+    @Override
+    protected final void dataChanged() {
+        unsetLow = 0;
+        unsetHigh = 0;
+        for (int row = 0; row < SIZE; row++) {
+            for (int column = 0; column < SIZE; column++) {
+                if (get(row, column) == UNSET) {
+                    int index = indexOf(row, column);
+                    if (index < Long.SIZE) {
+                        unsetLow |= 1L << index;
+                    } else {
+                        unsetHigh |= 1L << (index - Long.SIZE);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Sets or clears one bit.
+     * @param word the word to change.
+     * @param bit the index of the bit to change.
+     * @param set {@code true} to set the bit, {@code false} to clear it.
+     * @return the changed word.
+     */
+    private static long setBit(final long word,
+            final int bit,
+            final boolean set) {
+        if (set) {
+            return word | (1L << bit);
+        }
+        return word & ~(1L << bit);
+    }
+
+    @Override
+    public int getSetCount() {
+        return TOTAL_FIELDS - Long.bitCount(unsetLow)
+                - Long.bitCount(unsetHigh);
     }
 
     @Override
     public final Object clone() {
-        RiddleImpl clone;
-        clone = (RiddleImpl) super.clone();
-        clone.writeable = QuadraticArrays.cloneArray(writeable);
-        return clone;
+        // the masks are primitive fields copied by the shallow clone
+        return super.clone();
     }
 }
@@ -0,0 +1,341 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps riddles created ahead of time for instant access.
+ * There is one bounded buffer per {@link GenerationSpec}, kept
+ * topped up by low priority background threads. Taking a riddle
+ * never waits for the background threads; if the buffer is empty
+ * the riddle is created on the calling thread.
+ * <br>Example usage:
+ * <br>
+ * <code>
+ *  RiddlePool pool = new RiddlePool(2);<br>
+ *  pool.addBuffer(easySpec, 10);<br>
+ *  pool.addBuffer(hardSpec, 5);<br>
+ *  pool.start();<br>
+ *  Riddle riddle = pool.take(hardSpec);<br>
+ * </code>
+ * @author Stephan Fuhrmann
+ */
+public final class RiddlePool {
+
+    /** Nanoseconds per second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** The buffered riddles and counters for one spec. */
+    private static final class Buffer {
+        /** The spec of the riddles in this buffer. */
+        private final GenerationSpec spec;
+        /** The riddles ready to take. */
+        private final BlockingQueue<Riddle> riddles;
+        /** The number of riddles being created for this buffer. */
+        private final AtomicInteger pending = new AtomicInteger();
+        /** The number of riddles added by the background threads. */
+        private final AtomicLong refills = new AtomicLong();
+        /** The number of riddles taken from the buffer. */
+        private final AtomicLong hits = new AtomicLong();
+        /** The number of riddles created on the calling thread. */
+        private final AtomicLong misses = new AtomicLong();
+
+        /** Creates an empty buffer.
+         * @param inSpec the spec of the riddles in this buffer.
+         * @param capacity the maximum number of riddles buffered.
+         */
+        Buffer(final GenerationSpec inSpec, final int capacity) {
+            spec = inSpec;
+            riddles = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /** Get how much of the buffer is filled or being filled.
+         * @return the filled fraction between 0 and 1.
+         */
+        double reservedFraction() {
+            int capacity = riddles.size() + riddles.remainingCapacity();
+            return (double) (riddles.size() + pending.get()) / capacity;
+        }
+    }
+
+    /** The number of background threads. */
+    private final int threads;
+
+    /** The root of the background thread random streams. */
+    private final SplitMix64 root;
+
+    /** The buffers by spec. */
+    private final Map<GenerationSpec, Buffer> buffers;
+
+    /** The background threads, empty until started. */
+    private final List<Thread> workers;
+
+    /** The time the background threads were started. */
+    private long startNanos;
+
+    /** Whether the background threads shall stop. */
+    private volatile boolean shutdown;
+
+    /** The number of riddles the background threads failed on. */
+    private final AtomicLong failures = new AtomicLong();
+
+    /** The last failure of a background thread, or {@code null}. */
+    private final AtomicReference<Throwable> lastFailure =
+            new AtomicReference<>();
+
+    /**
+     * Creates a pool without buffers.
+     * @param threadCount the number of background threads.
+     * @throws IllegalArgumentException if the thread count is not positive.
+     */
+    public RiddlePool(final int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException(
+                    "threadCount must be positive: " + threadCount);
+        }
+        threads = threadCount;
+        root = new SplitMix64(new Random().nextLong());
+        buffers = new IdentityHashMap<>();
+        workers = new ArrayList<>();
+    }
+
+    /** Adds a buffer for riddles of the given spec.
+     * @param spec the spec the buffered riddles match.
+     * @param capacity the maximum number of riddles to buffer.
+     * @throws IllegalStateException if the pool was already started.
+     */
+    public synchronized void addBuffer(final GenerationSpec spec,
+            final int capacity) {
+        Objects.requireNonNull(spec, "spec is null");
+        if (!workers.isEmpty()) {
+            throw new IllegalStateException("Pool already started");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be positive: " + capacity);
+        }
+        buffers.put(spec, new Buffer(spec, capacity));
+    }
+
+    /** Starts the background threads filling the buffers.
+     * @throws IllegalStateException if the pool was already started.
+     */
+    public synchronized void start() {
+        if (!workers.isEmpty()) {
+            throw new IllegalStateException("Pool already started");
+        }
+        startNanos = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            Random random = root.split();
+            Thread t = new Thread(() -> work(random), "RiddlePool");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            workers.add(t);
+            t.start();
+        }
+    }
+
+    /** Stops the background threads. Buffered riddles can still
+     * be taken.
+     */
+    public void shutdown() {
+        shutdown = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /** Takes a riddle matching the given spec. Returns a buffered
+     * riddle if there is one, or else creates one on the calling
+     * thread.
+     * @param spec the spec of a buffer of this pool.
+     * @return a riddle matching the spec.
+     * @throws IllegalArgumentException if there is no buffer for the spec.
+     * @throws IllegalStateException if the buffer was empty and no
+     * riddle matching the spec was found within its
+     * {@link GenerationSpec#getTimeLimit() time limit}.
+     */
+    public Riddle take(final GenerationSpec spec) {
+        Buffer buffer = getBuffer(spec);
+        Riddle result = buffer.riddles.poll();
+        if (result != null) {
+            buffer.hits.incrementAndGet();
+            synchronized (this) {
+                notifyAll();
+            }
+            return result;
+        }
+
+        buffer.misses.incrementAndGet();
+        result = Creator.createRiddle(spec);
+        if (result == null) {
+            throw new IllegalStateException(
+                    "No riddle matching the spec within "
+                    + spec.getTimeLimit() + " ms");
+        }
+        return result;
+    }
+
+    /** Get the number of riddles ready in a buffer.
+     * @param spec the spec of a buffer of this pool.
+     * @return the number of buffered riddles.
+     */
+    public int getFillLevel(final GenerationSpec spec) {
+        return getBuffer(spec).riddles.size();
+    }
+
+    /** Get the ratio of takes that had to create the riddle
+     * on the calling thread.
+     * @param spec the spec of a buffer of this pool.
+     * @return the miss rate between 0 and 1, or 0 if nothing was taken.
+     */
+    public double getMissRate(final GenerationSpec spec) {
+        Buffer buffer = getBuffer(spec);
+        long misses = buffer.misses.get();
+        long total = misses + buffer.hits.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) misses / total;
+    }
+
+    /** Get the number of riddles added to a buffer per second
+     * since the pool was started.
+     * @param spec the spec of a buffer of this pool.
+     * @return the refill rate, or 0 if the pool was not started.
+     */
+    public double getRefillRate(final GenerationSpec spec) {
+        Buffer buffer = getBuffer(spec);
+        long elapsed;
+        synchronized (this) {
+            if (workers.isEmpty()) {
+                return 0;
+            }
+            elapsed = System.nanoTime() - startNanos;
+        }
+        return buffer.refills.get() * NANOS_PER_SECOND / elapsed;
+    }
+
+    /** Get the number of riddles the background threads failed on.
+     * A riddle failing with an exception is skipped and the thread
+     * goes on with the next one, an error ends the thread.
+     * @return the number of failures since the pool was created.
+     * @see #getLastFailure()
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /** Get the last failure of a background thread.
+     * @return the last exception or error thrown while creating
+     * a riddle, or {@code null} if there was none.
+     */
+    public Throwable getLastFailure() {
+        return lastFailure.get();
+    }
+
+    /** Get the buffer for a spec.
+     * @param spec the spec of a buffer of this pool.
+     * @return the buffer.
+     * @throws IllegalArgumentException if there is no buffer for the spec.
+     */
+    private synchronized Buffer getBuffer(final GenerationSpec spec) {
+        Buffer buffer = buffers.get(spec);
+        if (buffer == null) {
+            throw new IllegalArgumentException("No buffer for spec");
+        }
+        return buffer;
+    }
+
+    /** Picks the buffer with the lowest fill level and reserves a slot.
+     * Waits while all buffers are full.
+     * @return the buffer to create a riddle for, or {@code null}
+     * if the pool was shut down.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    private synchronized Buffer reserve() throws InterruptedException {
+        while (!shutdown) {
+            Buffer emptiest = null;
+            double lowest = 1;
+            for (Buffer buffer : buffers.values()) {
+                double fraction = buffer.reservedFraction();
+                if (fraction < lowest) {
+                    lowest = fraction;
+                    emptiest = buffer;
+                }
+            }
+            if (emptiest != null) {
+                emptiest.pending.incrementAndGet();
+                return emptiest;
+            }
+            wait();
+        }
+        return null;
+    }
+
+    /** Fills the buffers until the pool is shut down.
+     * @param random the random number generator of this thread.
+     */
+    private void work(final Random random) {
+        try {
+            Buffer buffer;
+            while ((buffer = reserve()) != null) {
+                try {
+                    Riddle riddle = null;
+                    while (riddle == null && !shutdown) {
+                        riddle = Creator.createRiddle(buffer.spec, random);
+                    }
+                    if (riddle != null && buffer.riddles.offer(riddle)) {
+                        buffer.refills.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    recordFailure(e);
+                } finally {
+                    buffer.pending.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Error e) {
+            // the thread ends, but the failure shall not go unnoticed
+            recordFailure(e);
+            throw e;
+        }
+    }
+
+    /** Records a failure of a background thread.
+     * @param failure the exception or error thrown.
+     */
+    private void recordFailure(final Throwable failure) {
+        failures.incrementAndGet();
+        lastFailure.set(failure);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * Removes clues from a riddle while keeping it uniquely solvable.
+ * The reducer keeps one cached search state for the whole riddle
+ * and tests clue removals by unsetting cells in place. No solver
+ * or matrix copies are created per tested cell.
+ * @author Stephan Fuhrmann
+ */
+final class RiddleReducer {
+
+    /** The default number of search nodes per uniqueness check. */
+    static final long DEFAULT_NODE_LIMIT = 200_000;
+
+    /**
+     * The riddle in reduction. Cells that are set are the clues.
+     */
+    private final CachedGameMatrixImpl riddle;
+
+    /**
+     * The solution of the riddle. The first index is the row index,
+     * the second index is the column index.
+     */
+    private final byte[][] solution;
+
+    /** The maximum number of search nodes per uniqueness check.
+     * @see #DEFAULT_NODE_LIMIT
+     */
+    private long nodeLimit;
+
+    /** The search nodes left in the current uniqueness check. */
+    private long nodesLeft;
+
+    /** The search nodes with more than one candidate visited. */
+    private long guesses;
+
+    /** The number of uniqueness checks done. */
+    private long checks;
+
+    /** The number of uniqueness checks that exceeded the node limit. */
+    private long exhaustedChecks;
+
+    /**
+     * Creates a reducer for the given solved matrix.
+     * @param fullMatrix a fully set up (solved) and valid sudoku.
+     */
+    RiddleReducer(final GameMatrix fullMatrix) {
+        solution = fullMatrix.getArray();
+        riddle = new CachedGameMatrixImpl();
+        riddle.setAll(solution);
+        nodeLimit = DEFAULT_NODE_LIMIT;
+    }
+
+    /** Set the maximum number of search nodes per uniqueness check.
+     * Checks that exceed the limit are treated as not unique.
+     * @param set the new limit.
+     */
+    void setNodeLimit(final long set) {
+        this.nodeLimit = set;
+    }
+
+    /** Get the value of a cell of the riddle in reduction.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return the cell value ranging from 0 to 9.
+     */
+    byte get(final int row, final int column) {
+        return riddle.get(row, column);
+    }
+
+    /** Get the number of clues left.
+     * @return the number of set cells.
+     */
+    int getSetCount() {
+        return riddle.getSetCount();
+    }
+
+    /** Get the number of uniqueness checks done.
+     * @return the number of checks.
+     */
+    long getChecks() {
+        return checks;
+    }
+
+    /** Get the number of uniqueness checks that exceeded the node limit.
+     * @return the number of checks treated as not unique for
+     * lack of budget.
+     */
+    long getExhaustedChecks() {
+        return exhaustedChecks;
+    }
+
+    /** Sets a cleared cell back to its solution value.
+     * The riddle stays uniquely solvable.
+     * @param row the row of the cell to restore.
+     * @param column the column of the cell to restore.
+     */
+    void restore(final int row, final int column) {
+        assert riddle.get(row, column) == GameMatrix.UNSET;
+        riddle.set(row, column, solution[row][column]);
+    }
+
+    /** Saves the current reduction state on top of a stack.
+     * @param snapshots the stack to push the state to.
+     * @see #rollback(SnapshotStack)
+     */
+    void save(final SnapshotStack snapshots) {
+        snapshots.push(riddle);
+    }
+
+    /** Returns to the top state of a stack and removes it.
+     * @param snapshots the stack to pop the state from.
+     * @see #save(SnapshotStack)
+     */
+    void rollback(final SnapshotStack snapshots) {
+        snapshots.pop(riddle);
+    }
+
+    /** Clears the given cell if the riddle stays uniquely solvable.
+     * @param row the row of the clue to clear.
+     * @param column the column of the clue to clear.
+     * @return {@code true} if the cell was cleared, {@code false}
+     * if it was left unchanged.
+     */
+    boolean tryClear(final int row, final int column) {
+        assert riddle.get(row, column) != GameMatrix.UNSET;
+        byte old = riddle.get(row, column);
+        riddle.set(row, column, GameMatrix.UNSET);
+
+        // the riddle was unique before, so it stays unique if there is
+        // no solution using another value for the cleared cell
+        int alternatives = riddle.getFreeMask(row, column) & ~(1 << old);
+        int freeCells = GameMatrix.TOTAL_FIELDS - riddle.getSetCount();
+        nodesLeft = nodeLimit;
+        checks++;
+        boolean ambiguous = false;
+        for (int free = alternatives; free != 0 && !ambiguous;
+                free &= free - 1) {
+            byte number = (byte) Integer.numberOfTrailingZeros(free);
+            riddle.set(row, column, number);
+            ambiguous = hasSolution(freeCells - 1);
+        }
+        if (nodesLeft < 0) {
+            exhaustedChecks++;
+        }
+
+        if (ambiguous) {
+            // rollback
+            riddle.set(row, column, old);
+            return false;
+        }
+        riddle.set(row, column, GameMatrix.UNSET);
+        return true;
+    }
+
+    /**
+     * Searches a completion of the current state in place. All cells
+     * set during the search are reset before returning.
+     * @param freeCells number of free cells, abort criterion.
+     * @return {@code true} if a solution exists or the node limit
+     * was exceeded, {@code false} if there is no solution.
+     */
+    private boolean hasSolution(final int freeCells) {
+        if (freeCells == 0) {
+            return true;
+        }
+        if (--nodesLeft < 0) {
+            // out of budget, assume the worst
+            return true;
+        }
+
+        int minimumRow = -1;
+        int minimumColumn = -1;
+        int minimumFree = 0;
+        int minimumBits = Integer.MAX_VALUE;
+        search:
+        for (int row = 0; row < GameMatrix.SIZE; row++) {
+            for (int column = 0; column < GameMatrix.SIZE; column++) {
+                if (riddle.get(row, column) != GameMatrix.UNSET) {
+                    continue;
+                }
+                int free = riddle.getFreeMask(row, column);
+                int bits = Integer.bitCount(free);
+                if (bits == 0) {
+                    // dead end, no need to look further
+                    return false;
+                }
+                if (bits < minimumBits) {
+                    minimumRow = row;
+                    minimumColumn = column;
+                    minimumFree = free;
+                    minimumBits = bits;
+                    if (bits == 1) {
+                        break search;
+                    }
+                }
+            }
+        }
+
+        if (minimumBits > 1) {
+            guesses++;
+        }
+
+        boolean found = false;
+        for (int free = minimumFree; free != 0 && !found;
+                free &= free - 1) {
+            byte number = (byte) Integer.numberOfTrailingZeros(free);
+            riddle.set(minimumRow, minimumColumn, number);
+            found = hasSolution(freeCells - 1);
+        }
+        riddle.set(minimumRow, minimumColumn, GameMatrix.UNSET);
+        return found;
+    }
+
+    /** Rates the difficulty of the current reduction state.
+     * @return the number of guesses needed to solve the riddle
+     * when always filling the cell with the fewest candidates.
+     * 0 means the riddle can be solved by naked singles only.
+     */
+    int rateDifficulty() {
+        nodesLeft = nodeLimit;
+        guesses = 0;
+        hasSolution(GameMatrix.TOTAL_FIELDS - riddle.getSetCount());
+        return (int) Math.min(guesses, Integer.MAX_VALUE);
+    }
+
+    /** Creates a riddle from the current reduction state.
+     * @return a riddle with the clues being read-only and the
+     * cleared cells being writable.
+     */
+    Riddle toRiddle() {
+        RiddleImpl result = new RiddleImpl();
+        result.setAll(riddle.getArray());
+        long[] mask = new long[2];
+        result.getUnsetMask(mask);
+        result.setWritableMask(mask);
+        return result;
+    }
+}
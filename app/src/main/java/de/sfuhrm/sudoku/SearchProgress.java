@@ -0,0 +1,105 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+/**
+ * A snapshot of a {@link LowClueSearch} taken when it found
+ * a riddle with fewer clues.
+ * @author Stephan Fuhrmann
+ */
+public final class SearchProgress {
+
+    /** The milliseconds elapsed since the start of the search. */
+    private final long elapsedMillis;
+
+    /** The clue count of the best riddle found. */
+    private final int clues;
+
+    /** The number of moves done. */
+    private final long moves;
+
+    /** The number of uniqueness checks done. */
+    private final long checks;
+
+    /** The number of uniqueness checks that exceeded the node limit. */
+    private final long exhaustedChecks;
+
+    /** Creates a new snapshot.
+     * @param inElapsedMillis the milliseconds elapsed since the start.
+     * @param inClues the clue count of the best riddle found.
+     * @param inMoves the number of moves done.
+     * @param inChecks the number of uniqueness checks done.
+     * @param inExhaustedChecks the number of uniqueness checks that
+     * exceeded the node limit.
+     */
+    SearchProgress(final long inElapsedMillis,
+            final int inClues,
+            final long inMoves,
+            final long inChecks,
+            final long inExhaustedChecks) {
+        elapsedMillis = inElapsedMillis;
+        clues = inClues;
+        moves = inMoves;
+        checks = inChecks;
+        exhaustedChecks = inExhaustedChecks;
+    }
+
+    /** Get the time elapsed since the start of the search.
+     * @return the elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /** Get the clue count of the best riddle found.
+     * @return the number of clues.
+     */
+    public int getClues() {
+        return clues;
+    }
+
+    /** Get the number of moves done.
+     * @return the number of moves.
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /** Get the number of uniqueness checks done.
+     * @return the number of checks.
+     */
+    public long getChecks() {
+        return checks;
+    }
+
+    /** Get the number of uniqueness checks that exceeded the node limit.
+     * @return the number of checks treated as not unique.
+     */
+    public long getExhaustedChecks() {
+        return exhaustedChecks;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ms: %d clues after %d moves, "
+                + "%d checks (%d exhausted)",
+                elapsedMillis, clues, moves, checks, exhaustedChecks);
+    }
+}
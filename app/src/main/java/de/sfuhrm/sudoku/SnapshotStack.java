@@ -0,0 +1,108 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * A stack of saved search states.
+ * Branching searches push the state of a {@link CachedGameMatrixImpl}
+ * before trying a branch and pop it to undo the branch. All states are
+ * stored in two flat arrays that are reused, so pushing and popping
+ * copies two arrays and creates no garbage.
+ * @author Stephan Fuhrmann
+ */
+final class SnapshotStack {
+
+    /** The saved cell values, {@link GameMatrix#TOTAL_FIELDS} per state. */
+    private byte[] cells;
+
+    /** The saved cached state,
+     * {@link CachedGameMatrixImpl#STATE_SIZE} per state. */
+    private int[] cached;
+
+    /** The number of states on the stack. */
+    private int size;
+
+    /**
+     * Creates an empty stack.
+     * @param capacity the number of states to reserve space for.
+     * The stack grows if more states are pushed.
+     */
+    SnapshotStack(final int capacity) {
+        cells = new byte[capacity * GameMatrix.TOTAL_FIELDS];
+        cached = new int[capacity * CachedGameMatrixImpl.STATE_SIZE];
+    }
+
+    /** Get the number of states on the stack.
+     * @return the number of pushed and not yet dropped states.
+     */
+    int size() {
+        return size;
+    }
+
+    /** Saves the state of a matrix on top of the stack.
+     * @param matrix the matrix to save the state of.
+     */
+    void push(final CachedGameMatrixImpl matrix) {
+        if ((size + 1) * GameMatrix.TOTAL_FIELDS > cells.length) {
+            int capacity = Math.max(1, 2 * size);
+            cells = Arrays.copyOf(cells,
+                    capacity * GameMatrix.TOTAL_FIELDS);
+            cached = Arrays.copyOf(cached,
+                    capacity * CachedGameMatrixImpl.STATE_SIZE);
+        }
+        matrix.saveState(cells, size * GameMatrix.TOTAL_FIELDS,
+                cached, size * CachedGameMatrixImpl.STATE_SIZE);
+        size++;
+    }
+
+    /** Restores the top state into a matrix and keeps it on the stack.
+     * @param matrix the matrix to restore the state into.
+     * @throws IllegalStateException if the stack is empty.
+     */
+    void peek(final CachedGameMatrixImpl matrix) {
+        if (size == 0) {
+            throw new IllegalStateException("Stack is empty");
+        }
+        int top = size - 1;
+        matrix.restoreState(cells, top * GameMatrix.TOTAL_FIELDS,
+                cached, top * CachedGameMatrixImpl.STATE_SIZE);
+    }
+
+    /** Restores the top state into a matrix and removes it.
+     * @param matrix the matrix to restore the state into.
+     * @throws IllegalStateException if the stack is empty.
+     */
+    void pop(final CachedGameMatrixImpl matrix) {
+        peek(matrix);
+        size--;
+    }
+
+    /** Removes the top state without restoring it.
+     * @throws IllegalStateException if the stack is empty.
+     */
+    void drop() {
+        if (size == 0) {
+            throw new IllegalStateException("Stack is empty");
+        }
+        size--;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import static de.sfuhrm.sudoku.GameMatrix.SIZE;
+import static de.sfuhrm.sudoku.GameMatrix.TOTAL_FIELDS;
+
+/**
+ * Encodes solved sudokus into 13 bytes.
+ * The cells are visited in row-major order. Every cell has a set of
+ * candidates not used yet in its row, column and block, and the cell
+ * value is stored as its index among the candidates. The indices form
+ * a mixed-radix number with the candidate counts as radices. Cells
+ * with one candidate take no space.
+ * <br>
+ * The cell in row {@code r} and column {@code c} comes after
+ * {@code c} cells of its row, {@code r} cells of its column and
+ * {@code (r % 3) * 3 + c % 3} cells of its block, all holding distinct
+ * values. It therefore has at most
+ * {@code 9 - max(r, c, (r % 3) * 3 + c % 3)} candidates. The product
+ * of these bounds over all cells is below 2<sup>104</sup>, so every
+ * solution fits into {@link #ENCODED_BYTES} bytes. Real grids need
+ * about 81 bits.
+ * <br>
+ * The target of this codec is storing a solution in less than
+ * 16 bytes without any tables. It does not rank the grid within its
+ * symmetry class. Ranking it would store the index of the essentially
+ * different grid (one of 5,472,730,538) and the index of the
+ * symmetry transform, about 73 bits or 10 bytes in total. But it
+ * needs a table of all essentially different grids, or an equivalent
+ * enumeration, which is out of scope here.
+ * @author Stephan Fuhrmann
+ */
+public final class SolutionCodec {
+
+    /** The number of bytes of an encoded solution. */
+    public static final int ENCODED_BYTES = 13;
+
+    /** The number of 32 bit limbs of the encoded number. */
+    private static final int LIMBS = (ENCODED_BYTES + Integer.BYTES - 1)
+            / Integer.BYTES;
+
+    /** The largest value of the long accumulator that can take
+     * one more cell. */
+    private static final long SMALL_LIMIT = (Long.MAX_VALUE - SIZE) / SIZE;
+
+    /** The mask for one 32 bit limb in a long. */
+    private static final long LIMB_MASK = 0xFFFFFFFFL;
+
+    /** The number of units (row, column, block) per cell. */
+    private static final int UNITS_PER_CELL = 3;
+
+    /** The row, column and block unit index of every cell,
+     * numbered as in {@link GameMatrixImpl#UNITS}. */
+    private static final byte[] CELL_UNITS =
+            new byte[TOTAL_FIELDS * UNITS_PER_CELL];
+
+    static {
+        for (int i = 0; i < TOTAL_FIELDS; i++) {
+            int row = i / SIZE;
+            int column = i % SIZE;
+            CELL_UNITS[i * UNITS_PER_CELL] = (byte) row;
+            CELL_UNITS[i * UNITS_PER_CELL + 1] = (byte) (SIZE + column);
+            CELL_UNITS[i * UNITS_PER_CELL + 2] = (byte) (2 * SIZE
+                    + GameMatrixImpl.blockOf(row, column));
+        }
+    }
+
+    /** No instances. */
+    private SolutionCodec() {
+    }
+
+    /** Encodes a solved sudoku.
+     * @param solution a fully set up (solved) and valid sudoku.
+     * @param target the array to write the encoded bytes to.
+     * @param offset the index of the first byte in {@code target}.
+     * @throws IllegalArgumentException if the sudoku is not solved
+     * or not valid.
+     */
+    public static void encode(final GameMatrix solution,
+            final byte[] target, final int offset) {
+        byte[] cells = new byte[TOTAL_FIELDS];
+        if (solution instanceof GameMatrixImpl) {
+            ((GameMatrixImpl) solution).getAll(cells, 0);
+        } else {
+            for (int i = 0; i < TOTAL_FIELDS; i++) {
+                cells[i] = solution.get(i / SIZE, i % SIZE);
+            }
+        }
+        encode(cells, 0, target, offset);
+    }
+
+    /** Encodes a solved sudoku given as flat cell values.
+     * @param cells the cell values in row-major order.
+     * @param cellOffset the index of the first cell in {@code cells}.
+     * @param target the array to write the encoded bytes to.
+     * @param offset the index of the first byte in {@code target}.
+     * @throws IllegalArgumentException if the sudoku is not solved
+     * or not valid.
+     */
+    public static void encode(final byte[] cells, final int cellOffset,
+            final byte[] target, final int offset) {
+        byte[] digits = new byte[TOTAL_FIELDS];
+        byte[] radices = new byte[TOTAL_FIELDS];
+        int[] used = new int[GameMatrixImpl.UNIT_COUNT];
+        for (int i = 0; i < TOTAL_FIELDS; i++) {
+            int value = cells[cellOffset + i];
+            int candidates = candidates(used, i);
+            int bit = 1 << value;
+            if (value < 1 || value > SIZE || (candidates & bit) == 0) {
+                throw new IllegalArgumentException(
+                        "Not a valid solution at cell " + i);
+            }
+            radices[i] = (byte) Integer.bitCount(candidates);
+            digits[i] = (byte) Integer.bitCount(candidates & (bit - 1));
+            use(used, i, bit);
+        }
+
+        // little-endian mixed radix: the first cell is the lowest digit.
+        // The number is built in a long as long as it fits.
+        long[] number = new long[LIMBS];
+        long small = 0;
+        boolean wide = false;
+        for (int i = TOTAL_FIELDS - 1; i >= 0; i--) {
+            int radix = radices[i];
+            if (radix == 1) {
+                continue;
+            }
+            if (!wide && small <= SMALL_LIMIT) {
+                small = small * radix + digits[i];
+                continue;
+            }
+            if (!wide) {
+                number[0] = small & LIMB_MASK;
+                number[1] = small >>> Integer.SIZE;
+                wide = true;
+            }
+            multiplyAdd(number, radix, digits[i]);
+        }
+        if (!wide) {
+            number[0] = small & LIMB_MASK;
+            number[1] = small >>> Integer.SIZE;
+        }
+        // little-endian, the number is below 2^104
+        for (int k = 0; k < ENCODED_BYTES; k++) {
+            target[offset + k] = (byte) (number[k / Integer.BYTES]
+                    >>> (k % Integer.BYTES * Byte.SIZE));
+        }
+    }
+
+    /** Decodes a solved sudoku.
+     * @param source the array to read the encoded bytes from.
+     * @param offset the index of the first byte in {@code source}.
+     * @return the decoded sudoku.
+     * @throws IllegalArgumentException if the bytes are not an encoded
+     * solution.
+     */
+    public static GameMatrix decode(final byte[] source, final int offset) {
+        byte[] cells = new byte[TOTAL_FIELDS];
+        decode(source, offset, cells, 0);
+        GameMatrixImpl result = new GameMatrixImpl();
+        result.setAll(cells);
+        return result;
+    }
+
+    /** Decodes a solved sudoku into flat cell values.
+     * @param source the array to read the encoded bytes from.
+     * @param offset the index of the first byte in {@code source}.
+     * @param cells receives the cell values in row-major order.
+     * @param cellOffset the index of the first cell in {@code cells}.
+     * @throws IllegalArgumentException if the bytes are not an encoded
+     * solution.
+     */
+    public static void decode(final byte[] source, final int offset,
+            final byte[] cells, final int cellOffset) {
+        long[] number = new long[LIMBS];
+        for (int k = 0; k < ENCODED_BYTES; k++) {
+            number[k / Integer.BYTES] |= (source[offset + k] & 0xffL)
+                    << (k % Integer.BYTES * Byte.SIZE);
+        }
+
+        // divide in 128 bits until the rest fits into a long
+        long small = -1;
+        int[] used = new int[GameMatrixImpl.UNIT_COUNT];
+        for (int i = 0; i < TOTAL_FIELDS; i++) {
+            int candidates = candidates(used, i);
+            int radix = Integer.bitCount(candidates);
+            if (radix == 0) {
+                throw new IllegalArgumentException(
+                        "Not an encoded solution, dead end at cell " + i);
+            }
+            int digit = 0;
+            if (radix > 1) {
+                if (small < 0 && (number[LIMBS - 1] | number[LIMBS - 2]) == 0
+                        && number[1] <= Integer.MAX_VALUE) {
+                    small = number[1] << Integer.SIZE | number[0];
+                }
+                if (small >= 0) {
+                    long quotient = small / radix;
+                    digit = (int) (small - quotient * radix);
+                    small = quotient;
+                } else {
+                    digit = divide(number, radix);
+                }
+            }
+            int free = candidates;
+            for (int j = 0; j < digit; j++) {
+                free &= free - 1;
+            }
+            int value = Integer.numberOfTrailingZeros(free);
+            cells[cellOffset + i] = (byte) value;
+            use(used, i, 1 << value);
+        }
+        if (small > 0 || small < 0
+                && (number[0] | number[1] | number[2] | number[3]) != 0) {
+            throw new IllegalArgumentException(
+                    "Not an encoded solution, bits left over");
+        }
+    }
+
+    /** Calculates the candidates of a cell.
+     * @param used the used value bits per row, column and block.
+     * @param index the index of the cell in row-major order.
+     * @return the bits of the values that can be set in the cell.
+     */
+    private static int candidates(final int[] used, final int index) {
+        int k = index * UNITS_PER_CELL;
+        return BitFreeMatrixInterface.MASK_FOR_NINE_BITS
+                & ~(used[CELL_UNITS[k]] | used[CELL_UNITS[k + 1]]
+                | used[CELL_UNITS[k + 2]]);
+    }
+
+    /** Marks a value as used for the row, column and block of a cell.
+     * @param used the used value bits per row, column and block.
+     * @param index the index of the cell in row-major order.
+     * @param bit the bit of the value.
+     */
+    private static void use(final int[] used, final int index,
+            final int bit) {
+        int k = index * UNITS_PER_CELL;
+        used[CELL_UNITS[k]] |= bit;
+        used[CELL_UNITS[k + 1]] |= bit;
+        used[CELL_UNITS[k + 2]] |= bit;
+    }
+
+    /** Sets a 128 bit number to {@code number * factor + addend}.
+     * @param number the 32 bit limbs, least significant first.
+     * @param factor the factor, less than 10.
+     * @param addend the addend, less than the factor.
+     */
+    private static void multiplyAdd(final long[] number, final int factor,
+            final int addend) {
+        long carry = addend;
+        for (int limb = 0; limb < LIMBS; limb++) {
+            long product = number[limb] * factor + carry;
+            number[limb] = product & LIMB_MASK;
+            carry = product >>> Integer.SIZE;
+        }
+        assert carry == 0 : "Overflow";
+    }
+
+    /** Divides a 128 bit number in place.
+     * @param number the 32 bit limbs, least significant first.
+     * @param divisor the divisor, less than 10.
+     * @return the remainder.
+     */
+    private static int divide(final long[] number, final int divisor) {
+        long remainder = 0;
+        for (int limb = LIMBS - 1; limb >= 0; limb--) {
+            long current = remainder << Integer.SIZE | number[limb];
+            long quotient = current / divisor;
+            number[limb] = quotient;
+            remainder = current - quotient * divisor;
+        }
+        return (int) remainder;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Random;
+
+/**
+ * A {@link Random} with the SplitMix64 algorithm that can split off
+ * independent streams, like {@code java.util.SplittableRandom}
+ * which is not available on all platforms this library runs on.
+ * Lets the {@link Random} based creation code run on independent
+ * splittable streams. An instance must not be shared between threads.
+ * @author Stephan Fuhrmann
+ */
+final class SplitMix64 extends Random {
+
+    /** For serialization. */
+    private static final long serialVersionUID = 1L;
+
+    /** The gamma of streams created from a seed. */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** Gammas with fewer bit transitions are spread further. */
+    private static final int MIN_GAMMA_TRANSITIONS = 24;
+
+    /** The current state, advanced by the gamma for every value. */
+    private long state;
+
+    /** The odd increment of the state. */
+    private final long gamma;
+
+    /** Creates a new stream.
+     * @param seed the seed of the stream. Streams with the same seed
+     * return the same values.
+     */
+    SplitMix64(final long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    /** Creates a new stream.
+     * @param seed the initial state.
+     * @param inGamma the odd increment of the state.
+     */
+    private SplitMix64(final long seed, final long inGamma) {
+        super(seed);
+        state = seed;
+        gamma = inGamma;
+    }
+
+    /** Splits off a new stream. The new stream and this stream
+     * return statistically independent values. Splitting advances
+     * this stream, so streams split in the same order from streams
+     * with the same seed return the same values.
+     * @return the new stream.
+     */
+    SplitMix64 split() {
+        return new SplitMix64(nextLong(), mixGamma(nextState()));
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextState());
+    }
+
+    @Override
+    protected int next(final int bits) {
+        return (int) (nextLong() >>> (Long.SIZE - bits));
+    }
+
+    /** Advances the state.
+     * @return the new state.
+     */
+    private long nextState() {
+        state += gamma;
+        return state;
+    }
+
+    /** Mixes the bits of a state into a random value.
+     * @param in the state to mix.
+     * @return the mixed value.
+     */
+    private static long mix64(final long in) {
+        long z = in;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Mixes the bits of a state into the gamma of a new stream.
+     * @param in the state to mix.
+     * @return an odd gamma.
+     */
+    private static long mixGamma(final long in) {
+        long z = in;
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int transitions = Long.bitCount(z ^ (z >>> 1));
+        if (transitions < MIN_GAMMA_TRANSITIONS) {
+            return z ^ 0xaaaaaaaaaaaaaaaaL;
+        }
+        return z;
+    }
+}
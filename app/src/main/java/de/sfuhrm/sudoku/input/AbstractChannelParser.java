@@ -0,0 +1,245 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.input;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Basic functionality for parsers reading UTF-8 text from a channel
+ * or a buffer.
+ * @author Stephan Fuhrmann
+ */
+abstract class AbstractChannelParser implements GameMatrixParser {
+
+    /** The size of the read buffer for channels. */
+    static final int BUFFER_SIZE = 8192;
+
+    /** The channel to read from, or {@code null} if reading from
+     * a buffer only. */
+    private final ReadableByteChannel channel;
+
+    /** The bytes read but not consumed yet. */
+    private final ByteBuffer buffer;
+
+    /** The number of bytes consumed. */
+    private long position;
+
+    /** The UTF-8 bytes of the text for unknown/unset cells. */
+    private byte[] unknownCellContent;
+
+    /** Creates a parser reading from a channel.
+     * The channel should be in blocking mode.
+     * @param source the channel to read from.
+     * @param unknown the default text for unknown/unset cells.
+     */
+    AbstractChannelParser(final ReadableByteChannel source,
+            final String unknown) {
+        channel = Objects.requireNonNull(source, "source is null");
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+        setUnknownCellContentCharacter(unknown);
+    }
+
+    /** Creates a parser reading the remaining bytes of a buffer,
+     * for example a mapped file.
+     * @param source the buffer to read from. Its position is advanced
+     * while parsing.
+     * @param unknown the default text for unknown/unset cells.
+     */
+    AbstractChannelParser(final ByteBuffer source, final String unknown) {
+        channel = null;
+        buffer = Objects.requireNonNull(source, "source is null");
+        setUnknownCellContentCharacter(unknown);
+    }
+
+    /** Sets the String used for unknown/unset cells.
+     * Must match the setting of the formatter that wrote the document.
+     * @param newUnknownCellContentCharacter the text of unset cells.
+     * @throws IllegalArgumentException if the text is empty or starts
+     * with a digit from 1 to 9.
+     */
+    public final void setUnknownCellContentCharacter(
+            final String newUnknownCellContentCharacter) {
+        byte[] bytes = newUnknownCellContentCharacter
+                .getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0 || isDigit(bytes[0])) {
+            throw new IllegalArgumentException(
+                    "Illegal unknown cell content: '"
+                    + newUnknownCellContentCharacter + "'");
+        }
+        unknownCellContent = bytes;
+    }
+
+    /** Get the number of bytes consumed.
+     * @return the offset of the next byte to read in the document.
+     */
+    public final long getPosition() {
+        return position;
+    }
+
+    /** Checks for a cell digit.
+     * @param b the byte to check.
+     * @return {@code true} if the byte is a digit from 1 to 9.
+     */
+    private static boolean isDigit(final int b) {
+        return b >= '1' && b <= '9';
+    }
+
+    /** Refills the buffer from the channel.
+     * @return {@code true} if bytes are available.
+     * @throws IOException if reading fails.
+     */
+    private boolean fill() throws IOException {
+        if (buffer.hasRemaining()) {
+            return true;
+        }
+        if (channel == null) {
+            return false;
+        }
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        return read > 0;
+    }
+
+    /** Gets the next byte without consuming it.
+     * @return the next byte, or -1 at the end of the input.
+     * @throws IOException if reading fails.
+     */
+    final int peek() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer.get(buffer.position()) & 0xff;
+    }
+
+    /** Consumes all bytes contained in a set.
+     * @param skipped the bytes to consume.
+     * @return the next byte not in the set, not consumed,
+     * or -1 at the end of the input.
+     * @throws IOException if reading fails.
+     */
+    final int skip(final byte[] skipped) throws IOException {
+        while (fill()) {
+            int start = buffer.position();
+            int limit = buffer.limit();
+            for (int i = start; i < limit; i++) {
+                byte b = buffer.get(i);
+                if (!contains(skipped, b)) {
+                    position += i - start;
+                    buffer.position(i);
+                    return b & 0xff;
+                }
+            }
+            position += limit - start;
+            buffer.position(limit);
+        }
+        return -1;
+    }
+
+    /** Checks whether a byte is contained in a set.
+     * @param set the set of bytes.
+     * @param b the byte to look for.
+     * @return {@code true} if the byte is in the set.
+     */
+    private static boolean contains(final byte[] set, final byte b) {
+        for (byte candidate : set) {
+            if (candidate == b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Consumes the next byte.
+     * @return the next byte, or -1 at the end of the input.
+     * @throws IOException if reading fails.
+     */
+    final int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        position++;
+        return buffer.get() & 0xff;
+    }
+
+    /** Consumes bytes that must match the given ones.
+     * @param expected the bytes to expect.
+     * @throws IOException if reading fails or other bytes were found.
+     */
+    final void expect(final byte[] expected) throws IOException {
+        for (byte b : expected) {
+            expect(b & 0xff);
+        }
+    }
+
+    /** Consumes a byte that must match the given one.
+     * @param expected the byte to expect.
+     * @throws IOException if reading fails or another byte was found.
+     */
+    final void expect(final int expected) throws IOException {
+        int b = read();
+        if (b != expected) {
+            throw unexpected(b, "'" + (char) expected + "'");
+        }
+    }
+
+    /** Consumes one cell value.
+     * @return the cell value ranging from 0 to 9.
+     * @throws IOException if reading fails or no cell was found.
+     */
+    final byte readCell() throws IOException {
+        int b = read();
+        if (isDigit(b)) {
+            return (byte) (b - '0');
+        }
+        if (b != (unknownCellContent[0] & 0xff)) {
+            throw unexpected(b, "cell");
+        }
+        for (int i = 1; i < unknownCellContent.length; i++) {
+            expect(unknownCellContent[i] & 0xff);
+        }
+        return GameMatrix.UNSET;
+    }
+
+    /** Creates the exception for an unexpected byte.
+     * @param found the byte found, or -1 at the end of the input.
+     * @param expected what was expected instead.
+     * @return the exception to throw.
+     */
+    final IOException unexpected(final int found, final String expected) {
+        if (found < 0) {
+            return new EOFException("Expected " + expected
+                    + " at byte " + position + " but input ended");
+        }
+        return new IOException("Expected " + expected
+                + " at byte " + (position - 1) + " but found '"
+                + (char) found + "'");
+    }
+}
@@ -0,0 +1,42 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.input;
+
+import java.io.IOException;
+
+/**
+ * Reads game matrices one at a time from a document.
+ * Parsers read incrementally through a fixed-size buffer, so the
+ * memory needed does not depend on the size of the document.
+ * @author Stephan Fuhrmann
+ */
+public interface GameMatrixParser {
+
+    /** Reads the next matrix of the document.
+     * @param target receives the {@link de.sfuhrm.sudoku.GameMatrix#TOTAL_FIELDS}
+     * cell values in row-major order, each ranging from
+     * 0 (for UNSET) over 1 to 9.
+     * @param offset the index of the first cell in {@code target}.
+     * @return {@code true} if a matrix was read, {@code false} at the
+     * end of the document.
+     * @throws IOException if reading fails or the document is malformed.
+     */
+    boolean next(byte[] target, int offset) throws IOException;
+}
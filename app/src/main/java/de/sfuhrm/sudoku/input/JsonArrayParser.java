@@ -0,0 +1,120 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.input;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Parses the 3-dimensional JSON array written by
+ * {@link de.sfuhrm.sudoku.output.JsonArrayFormatter}.
+ * Whitespace between the tokens is skipped, so compact and indented
+ * documents are read alike. Cells are single digits from 1 to 9 or
+ * the unknown cell content of the formatter, {@code 0} by default.
+ * An unknown cell content starting with whitespace can not be read.
+ * @author Stephan Fuhrmann
+ */
+public final class JsonArrayParser extends AbstractChannelParser {
+
+    /** The JSON whitespace bytes. */
+    private static final byte[] WHITESPACE = {' ', '\n', '\r', '\t'};
+
+    /** Whether the opening bracket of the document was read. */
+    private boolean started;
+
+    /** Whether the closing bracket of the document was read. */
+    private boolean ended;
+
+    /** Number of matrices read. */
+    private long count;
+
+    /** Creates a parser reading from a channel.
+     * @param source the channel to read from.
+     */
+    public JsonArrayParser(final ReadableByteChannel source) {
+        super(source, "0");
+    }
+
+    /** Creates a parser reading the remaining bytes of a buffer.
+     * @param source the buffer to read from, for example a mapped file.
+     */
+    public JsonArrayParser(final ByteBuffer source) {
+        super(source, "0");
+    }
+
+    /** Consumes JSON whitespace.
+     * @return the next byte after the whitespace, not consumed,
+     * or -1 at the end of the input.
+     * @throws IOException if reading fails.
+     */
+    private int skipWhitespace() throws IOException {
+        return skip(WHITESPACE);
+    }
+
+    @Override
+    public boolean next(final byte[] target, final int offset)
+            throws IOException {
+        if (ended) {
+            return false;
+        }
+        int next = skipWhitespace();
+        if (!started) {
+            expect('[');
+            started = true;
+            next = skipWhitespace();
+        }
+        if (next == ']') {
+            read();
+            ended = true;
+            return false;
+        }
+        if (count != 0) {
+            expect(',');
+            skipWhitespace();
+        }
+
+        expect('[');
+        int k = offset;
+        for (int row = 0; row < GameMatrix.SIZE; row++) {
+            skipWhitespace();
+            if (row != 0) {
+                expect(',');
+                skipWhitespace();
+            }
+            expect('[');
+            for (int column = 0; column < GameMatrix.SIZE; column++) {
+                skipWhitespace();
+                if (column != 0) {
+                    expect(',');
+                    skipWhitespace();
+                }
+                target[k++] = readCell();
+            }
+            skipWhitespace();
+            expect(']');
+        }
+        skipWhitespace();
+        expect(']');
+        count++;
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.input;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the plain text written by
+ * {@link de.sfuhrm.sudoku.output.PlainTextFormatter}.
+ * Every matrix is 9 lines of 9 cells, each line ended by the line
+ * separator. The unknown cell content and line separator must match
+ * the settings of the formatter.
+ * @author Stephan Fuhrmann
+ */
+public final class PlainTextParser extends AbstractChannelParser {
+
+    /** The UTF-8 bytes of the line separator. */
+    private byte[] lineSeparator;
+
+    /** Creates a parser reading from a channel.
+     * @param source the channel to read from.
+     */
+    public PlainTextParser(final ReadableByteChannel source) {
+        super(source, ".");
+        lineSeparator = new byte[] {'\n'};
+    }
+
+    /** Creates a parser reading the remaining bytes of a buffer.
+     * @param source the buffer to read from, for example a mapped file.
+     */
+    public PlainTextParser(final ByteBuffer source) {
+        super(source, ".");
+        lineSeparator = new byte[] {'\n'};
+    }
+
+    /** Sets the line separator String to expect.
+     * @param newLineSeparator the line separator of the document.
+     * @throws IllegalArgumentException if the separator is empty.
+     */
+    public void setLineSeparator(final String newLineSeparator) {
+        if (newLineSeparator.isEmpty()) {
+            throw new IllegalArgumentException("Empty line separator");
+        }
+        lineSeparator = newLineSeparator.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean next(final byte[] target, final int offset)
+            throws IOException {
+        if (peek() < 0) {
+            return false;
+        }
+        int k = offset;
+        for (int row = 0; row < GameMatrix.SIZE; row++) {
+            for (int column = 0; column < GameMatrix.SIZE; column++) {
+                target[k++] = readCell();
+            }
+            expect(lineSeparator);
+        }
+        return true;
+    }
+}
@@ -19,8 +19,15 @@ Boston, MA  02110-1301, USA.
 */
 package de.sfuhrm.sudoku.output;
 
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
+
 /**
  * Basic functionality for most text formatters.
+ * Subclasses stream their text in
+ * {@link #formatTo(GameMatrix, Appendable)} and the other
+ * {@code ...To} methods. The String returning methods are
+ * built on top of them.
  * @author Stephan Fuhrmann
  */
 abstract class AbstractTextFormatter implements GameMatrixFormatter {
@@ -61,13 +68,64 @@ abstract class AbstractTextFormatter implements GameMatrixFormatter {
         this.lineSeparator = newLineSeparator;
     }
 
+    /** Appends the text for a cell value.
+     * @param value the cell value ranging from 0 to 9.
+     * @param target the target to append the text to.
+     * @throws IOException if appending to the target fails.
+     */
+    protected final void appendCell(final byte value,
+            final Appendable target) throws IOException {
+        if (value == GameMatrix.UNSET) {
+            target.append(unknownCellContentCharacter);
+        } else {
+            target.append((char) ('0' + value));
+        }
+    }
+
+    @Override
+    public abstract void formatTo(GameMatrix matrix, Appendable target)
+            throws IOException;
+
+    @Override
+    public void documentStartTo(final Appendable target)
+            throws IOException {
+    }
+
+    @Override
+    public void documentEndTo(final Appendable target) throws IOException {
+    }
+
+    @Override
+    public final String format(final GameMatrix matrix) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            formatTo(matrix, sb);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
     @Override
-    public String documentStart() {
-        return "";
+    public final String documentStart() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            documentStartTo(sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
     }
 
     @Override
-    public String documentEnd() {
-        return "";
+    public final String documentEnd() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            documentEndTo(sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
     }
 }
@@ -0,0 +1,69 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.output;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * Writes game matrices in a raw binary layout.
+ * Every matrix is written as {@link GameMatrix#TOTAL_FIELDS} bytes
+ * in row-major order, each byte being the cell value from
+ * 0 (for UNSET) over 1 to 9. There is no header or trailer.
+ * @author Stephan Fuhrmann
+ */
+public final class BinarySink implements GameMatrixSink {
+
+    /** The stream to write to. */
+    private final OutputStream target;
+
+    /** The buffer for one matrix. */
+    private final byte[] buffer;
+
+    /** Constructs a new instance.
+     * @param inTarget the stream to write to. Should be buffered.
+     */
+    public BinarySink(final OutputStream inTarget) {
+        target = Objects.requireNonNull(inTarget, "inTarget is null");
+        buffer = new byte[GameMatrix.TOTAL_FIELDS];
+    }
+
+    @Override
+    public void documentStart() {
+    }
+
+    @Override
+    public void write(final GameMatrix matrix) throws IOException {
+        int k = 0;
+        for (int row = 0; row < GameMatrix.SIZE; row++) {
+            for (int column = 0; column < GameMatrix.SIZE; column++) {
+                buffer[k++] = matrix.get(row, column);
+            }
+        }
+        target.write(buffer);
+    }
+
+    @Override
+    public void documentEnd() throws IOException {
+        target.flush();
+    }
+}
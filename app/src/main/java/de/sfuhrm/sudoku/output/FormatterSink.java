@@ -0,0 +1,98 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.output;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * Writes game matrices as text using a {@link GameMatrixFormatter}.
+ * Every part is streamed into a reused buffer and handed to the
+ * target in one call, so writing creates no String per matrix and
+ * synchronized targets like {@link Writer} are locked once per
+ * matrix instead of once per character.
+ * @author Stephan Fuhrmann
+ */
+public final class FormatterSink implements GameMatrixSink {
+
+    /** The formatter creating the text. */
+    private final GameMatrixFormatter formatter;
+
+    /** The target to append the text to. */
+    private final Appendable target;
+
+    /** The reused buffer for one part of the text. */
+    private final StringBuilder buffer = new StringBuilder();
+
+    /** The reused characters for writing the buffer to a
+     * {@link Writer}. */
+    private char[] chars = new char[0];
+
+    /** Constructs a new instance.
+     * @param inFormatter the formatter creating the text.
+     * @param inTarget the target to append the text to.
+     */
+    public FormatterSink(final GameMatrixFormatter inFormatter,
+            final Appendable inTarget) {
+        formatter = Objects.requireNonNull(inFormatter,
+                "inFormatter is null");
+        target = Objects.requireNonNull(inTarget, "inTarget is null");
+    }
+
+    @Override
+    public void documentStart() throws IOException {
+        buffer.setLength(0);
+        formatter.documentStartTo(buffer);
+        flush();
+    }
+
+    @Override
+    public void write(final GameMatrix matrix) throws IOException {
+        buffer.setLength(0);
+        formatter.formatTo(matrix, buffer);
+        flush();
+    }
+
+    @Override
+    public void documentEnd() throws IOException {
+        buffer.setLength(0);
+        formatter.documentEndTo(buffer);
+        flush();
+    }
+
+    /** Hands the buffer to the target.
+     * @throws IOException if appending to the target fails.
+     */
+    private void flush() throws IOException {
+        int length = buffer.length();
+        if (target instanceof Writer) {
+            // Writer.append(CharSequence) would create a String
+            if (chars.length < length) {
+                chars = new char[Math.max(length, 2 * chars.length)];
+            }
+            buffer.getChars(0, length, chars, 0);
+            ((Writer) target).write(chars, 0, length);
+        } else {
+            target.append(buffer, 0, length);
+        }
+    }
+}
@@ -20,6 +20,7 @@ Boston, MA  02110-1301, USA.
 package de.sfuhrm.sudoku.output;
 
 import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
 
 /**
  * Formats the game matrix to a text representation.
@@ -30,6 +31,8 @@ import de.sfuhrm.sudoku.GameMatrix;
  * main part} and a
  * <li> document #{@link #documentEnd() end}.
  * </ul>
+ * Every part can also be streamed to an {@link Appendable}, for example
+ * a {@link java.io.Writer}, without creating a String per part.
  * @author Stephan Fuhrmann
  */
 public interface GameMatrixFormatter {
@@ -50,4 +53,37 @@ public interface GameMatrixFormatter {
      * @return a String representation of the document end.
      */
     String documentEnd();
+
+    /**
+     * Formats the input game matrix and appends the text to a target.
+     * The text is the same as the one returned by
+     * {@link #format(GameMatrix)}. Implementations append in small
+     * pieces, so targets that lock per call should be fed through
+     * a {@link FormatterSink}.
+     * @param matrix the matrix to format.
+     * @param target the target to append the text to.
+     * @throws IOException if appending to the target fails.
+     */
+    default void formatTo(GameMatrix matrix, Appendable target)
+            throws IOException {
+        target.append(format(matrix));
+    }
+
+    /** Appends the document start part to a target.
+     * @param target the target to append the text to.
+     * @throws IOException if appending to the target fails.
+     * @see #documentStart()
+     */
+    default void documentStartTo(Appendable target) throws IOException {
+        target.append(documentStart());
+    }
+
+    /** Appends the document end part to a target.
+     * @param target the target to append the text to.
+     * @throws IOException if appending to the target fails.
+     * @see #documentEnd()
+     */
+    default void documentEndTo(Appendable target) throws IOException {
+        target.append(documentEnd());
+    }
 }
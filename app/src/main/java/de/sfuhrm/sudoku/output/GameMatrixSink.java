@@ -0,0 +1,53 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.output;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
+
+/**
+ * Receives a sequence of game matrices and writes them somewhere.
+ * A sink is called with
+ * <ul>
+ * <li> one #{@link #documentStart() document start},
+ * <li> any number of #{@link #write(de.sfuhrm.sudoku.GameMatrix)
+ * matrices} and
+ * <li> one #{@link #documentEnd() document end}.
+ * </ul>
+ * @author Stephan Fuhrmann
+ */
+public interface GameMatrixSink {
+
+    /** Writes the document start part.
+     * @throws IOException if writing fails.
+     */
+    void documentStart() throws IOException;
+
+    /** Writes one game matrix.
+     * @param matrix the matrix to write.
+     * @throws IOException if writing fails.
+     */
+    void write(GameMatrix matrix) throws IOException;
+
+    /** Writes the document end part.
+     * @throws IOException if writing fails.
+     */
+    void documentEnd() throws IOException;
+}
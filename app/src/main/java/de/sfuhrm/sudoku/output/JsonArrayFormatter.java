@@ -20,6 +20,7 @@ Boston, MA  02110-1301, USA.
 package de.sfuhrm.sudoku.output;
 
 import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
 
 /**
  * Formats the game matrices to a 3-dimensional JSON array.
@@ -47,11 +48,13 @@ public final class JsonArrayFormatter extends AbstractTextFormatter {
         count = 0;
     }
 
-    /** Append a number of spaces to the StringBuilder.
+    /** Append a number of spaces to the Appendable.
      * @param level the number of indentions to append.
-     * @param to the StringBuilder to append to.
+     * @param to the Appendable to append to.
+     * @throws IOException if appending fails.
      */
-    private static void appendIndent(final int level, final StringBuilder to) {
+    private static void appendIndent(final int level, final Appendable to)
+            throws IOException {
         assert level >= 0;
         assert to != null;
         int total = level * INDENT_SPACES;
@@ -61,65 +64,57 @@ public final class JsonArrayFormatter extends AbstractTextFormatter {
     }
 
     @Override
-    public String format(final GameMatrix matrix) {
-        StringBuilder sb = new StringBuilder();
+    public void formatTo(final GameMatrix matrix, final Appendable target)
+            throws IOException {
 
         if (count != 0) {
-            sb.append(",");
+            target.append(",");
             if (indent) {
-                sb.append(getLineSeparator());
+                target.append(getLineSeparator());
             }
         }
 
         if (indent) {
-            appendIndent(1, sb);
+            appendIndent(1, target);
         }
-        sb.append("[");
+        target.append("[");
         if (indent) {
-            sb.append(getLineSeparator());
+            target.append(getLineSeparator());
         }
         for (int row = 0; row < GameMatrix.SIZE; row++) {
             if (indent) {
-                appendIndent(2, sb);
+                appendIndent(2, target);
             }
-            sb.append("[");
+            target.append("[");
             for (int column = 0; column < GameMatrix.SIZE; column++) {
                 byte val = matrix.get(row, column);
-                String str;
-                if (val == GameMatrix.UNSET) {
-                    str = getUnknownCellContentCharacter();
-                } else {
-                    str = Integer.toString(val);
-                }
 
                 if (column != 0) {
                     if (indent) {
-                        sb.append(", ");
+                        target.append(", ");
                     } else {
-                      sb.append(",");
+                      target.append(",");
                     }
                 }
-                sb.append(str);
+                appendCell(val, target);
             }
-            sb.append("]");
+            target.append("]");
             if (row != GameMatrix.SIZE - 1) {
-                sb.append(",");
+                target.append(",");
             }
             if (indent) {
-                sb.append(getLineSeparator());
+                target.append(getLineSeparator());
             }
         }
 
         if (indent) {
-            appendIndent(1, sb);
+            appendIndent(1, target);
         }
-        sb.append("]");
+        target.append("]");
         if (indent) {
-            sb.append(getLineSeparator());
+            target.append(getLineSeparator());
         }
         count++;
-
-        return sb.toString();
     }
 
     /** Whether to indent the output or not.
@@ -130,24 +125,21 @@ public final class JsonArrayFormatter extends AbstractTextFormatter {
     }
 
     @Override
-    public String documentStart() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[");
+    public void documentStartTo(final Appendable target)
+            throws IOException {
+        target.append("[");
         if (indent) {
-            sb.append(getLineSeparator());
+            target.append(getLineSeparator());
         }
         count = 0;
-        return sb.toString();
     }
 
     @Override
-    public String documentEnd() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("]");
+    public void documentEndTo(final Appendable target) throws IOException {
+        target.append("]");
         if (indent) {
-            sb.append(getLineSeparator());
+            target.append(getLineSeparator());
         }
         count = 0;
-        return sb.toString();
     }
 }
@@ -20,6 +20,7 @@ Boston, MA  02110-1301, USA.
 package de.sfuhrm.sudoku.output;
 
 import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
 
 /**
  * Formats the game matrix to a LaTeX document.
@@ -37,88 +38,79 @@ public final class LatexTableFormatter extends AbstractTextFormatter {
     }
 
     @Override
-    public String format(final GameMatrix matrix) {
-        StringBuilder sb = new StringBuilder();
+    public void formatTo(final GameMatrix matrix, final Appendable target)
+            throws IOException {
 
-        sb.append("\\begin{center}");
-        sb.append("\\huge");
-        sb.append(getLineSeparator());
-        sb.append("\\begin{tabular}{");
+        target.append("\\begin{center}");
+        target.append("\\huge");
+        target.append(getLineSeparator());
+        target.append("\\begin{tabular}{");
         for (int i = 0; i < GameMatrix.SIZE; i++) {
             if (i % GameMatrix.BLOCK_SIZE == 0 && i != 0) {
-                sb.append("|");
+                target.append("|");
             }
-            sb.append("|C{1.1em}");
+            target.append("|C{1.1em}");
         }
-        sb.append("|");
-        sb.append("}");
-        sb.append(getLineSeparator());
+        target.append("|");
+        target.append("}");
+        target.append(getLineSeparator());
 
         for (int row = 0; row < GameMatrix.SIZE; row++) {
             if (row % GameMatrix.BLOCK_SIZE == 0) {
-                sb.append("\\hline");
-                sb.append(getLineSeparator());
+                target.append("\\hline");
+                target.append(getLineSeparator());
             }
             for (int column = 0; column < GameMatrix.SIZE; column++) {
                 byte val = matrix.get(row, column);
-                String str;
-                if (val == GameMatrix.UNSET) {
-                    str = getUnknownCellContentCharacter();
-                } else {
-                    str = Integer.toString(val);
-                }
 
                 if (column != 0) {
-                    sb.append(TABLE_CELL_SEPARATOR);
+                    target.append(TABLE_CELL_SEPARATOR);
                 }
-                sb.append(" ");
-                sb.append(str);
-                sb.append(" ");
+                target.append(" ");
+                appendCell(val, target);
+                target.append(" ");
             }
-            sb.append("\\\\");
-            sb.append(getLineSeparator());
-            sb.append("\\hline");
-            sb.append(getLineSeparator());
+            target.append("\\\\");
+            target.append(getLineSeparator());
+            target.append("\\hline");
+            target.append(getLineSeparator());
         }
 
-        sb.append("\\end{tabular}");
-        sb.append(getLineSeparator());
-        sb.append("\\end{center}");
-        sb.append(getLineSeparator());
-
-        sb.append("\\vspace{25 mm}");
-        sb.append(getLineSeparator());
+        target.append("\\end{tabular}");
+        target.append(getLineSeparator());
+        target.append("\\end{center}");
+        target.append(getLineSeparator());
 
-        return sb.toString();
+        target.append("\\vspace{25 mm}");
+        target.append(getLineSeparator());
     }
 
     @Override
-    public String documentStart() {
-        String sb = "\\documentclass[a4paper,11pt]{article}" +
-                getLineSeparator() +
-                "\\usepackage{array}" +
-                getLineSeparator() +
-                "\\newcolumntype{L}[1]"
+    public void documentStartTo(final Appendable target)
+            throws IOException {
+        target.append("\\documentclass[a4paper,11pt]{article}")
+                .append(getLineSeparator())
+                .append("\\usepackage{array}")
+                .append(getLineSeparator())
+                .append("\\newcolumntype{L}[1]"
                 + "{>{\\raggedright\\let\\newline\\\\\\arraybackslash"
-                + "\\hspace{0pt}}m{#1}}" +
-                getLineSeparator() +
-                "\\newcolumntype{C}[1]"
+                + "\\hspace{0pt}}m{#1}}")
+                .append(getLineSeparator())
+                .append("\\newcolumntype{C}[1]"
                 + "{>{\\centering\\let\\newline\\\\\\arraybackslash"
-                + "\\hspace{0pt}}m{#1}}" +
-                getLineSeparator() +
-                "\\newcolumntype{R}[1]"
+                + "\\hspace{0pt}}m{#1}}")
+                .append(getLineSeparator())
+                .append("\\newcolumntype{R}[1]"
                 + "{>{\\raggedleft\\let\\newline\\\\\\arraybackslash"
-                + "\\hspace{0pt}}m{#1}}" +
-                getLineSeparator() +
-                "\\begin{document}" +
-                getLineSeparator();
-        return sb;
+                + "\\hspace{0pt}}m{#1}}")
+                .append(getLineSeparator())
+                .append("\\begin{document}")
+                .append(getLineSeparator());
     }
 
     @Override
-    public String documentEnd() {
-        String sb = "\\end{document}" +
-                getLineSeparator();
-        return sb;
+    public void documentEndTo(final Appendable target) throws IOException {
+        target.append("\\end{document}")
+                .append(getLineSeparator());
     }
 }
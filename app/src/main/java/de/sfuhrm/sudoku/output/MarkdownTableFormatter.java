@@ -20,6 +20,7 @@ Boston, MA  02110-1301, USA.
 package de.sfuhrm.sudoku.output;
 
 import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
 
 /**
  * Formats the game matrix to a markdown table.
@@ -31,59 +32,51 @@ public final class MarkdownTableFormatter extends AbstractTextFormatter {
     private static final String TABLE_SEPARATOR = "|";
 
     @Override
-    public String format(final GameMatrix matrix) {
-        StringBuilder sb = new StringBuilder();
+    public void formatTo(final GameMatrix matrix, final Appendable target)
+            throws IOException {
 
         for (int column = 0; column < GameMatrix.SIZE; column++) {
             if (column == 0) {
-                sb.append(TABLE_SEPARATOR);
+                target.append(TABLE_SEPARATOR);
             }
-            sb.append(" ");
-            sb.append(" ");
-            sb.append(TABLE_SEPARATOR);
+            target.append(" ");
+            target.append(" ");
+            target.append(TABLE_SEPARATOR);
         }
-        sb.append(getLineSeparator());
+        target.append(getLineSeparator());
 
         for (int column = 0; column < GameMatrix.SIZE; column++) {
             if (column == 0) {
-                sb.append(TABLE_SEPARATOR);
+                target.append(TABLE_SEPARATOR);
             }
-            sb.append("---");
-            sb.append(TABLE_SEPARATOR);
+            target.append("---");
+            target.append(TABLE_SEPARATOR);
         }
-        sb.append(getLineSeparator());
+        target.append(getLineSeparator());
 
         for (int row = 0; row < GameMatrix.SIZE; row++) {
             for (int column = 0; column < GameMatrix.SIZE; column++) {
                 byte val = matrix.get(row, column);
-                String str;
-                if (val == GameMatrix.UNSET) {
-                    str = getUnknownCellContentCharacter();
-                } else {
-                    str = Integer.toString(val);
-                }
 
                 if (column == 0) {
-                    sb.append(TABLE_SEPARATOR);
+                    target.append(TABLE_SEPARATOR);
                 }
-                sb.append(" ");
-                sb.append(str);
-                sb.append(" ");
-                sb.append(TABLE_SEPARATOR);
+                target.append(" ");
+                appendCell(val, target);
+                target.append(" ");
+                target.append(TABLE_SEPARATOR);
             }
-            sb.append(getLineSeparator());
+            target.append(getLineSeparator());
         }
 
         for (int column = 0; column < GameMatrix.SIZE; column++) {
             if (column == 0) {
-                sb.append(TABLE_SEPARATOR);
+                target.append(TABLE_SEPARATOR);
             }
-            sb.append(" ");
-            sb.append(" ");
-            sb.append(TABLE_SEPARATOR);
+            target.append(" ");
+            target.append(" ");
+            target.append(TABLE_SEPARATOR);
         }
-        sb.append(getLineSeparator());
-
-        return sb.toString();
+        target.append(getLineSeparator());
     }
 }
@@ -20,6 +20,7 @@ Boston, MA  02110-1301, USA.
 package de.sfuhrm.sudoku.output;
 
 import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
 
 /**
  * Formats the game matrix to a plain text.
@@ -28,22 +29,15 @@ import de.sfuhrm.sudoku.GameMatrix;
 public final class PlainTextFormatter extends AbstractTextFormatter {
 
     @Override
-    public String format(final GameMatrix matrix) {
-        StringBuilder sb = new StringBuilder();
+    public void formatTo(final GameMatrix matrix, final Appendable target)
+            throws IOException {
 
         for (int row = 0; row < GameMatrix.SIZE; row++) {
             for (int column = 0; column < GameMatrix.SIZE; column++) {
                 byte val = matrix.get(row, column);
-                String str;
-                if (val == GameMatrix.UNSET) {
-                    str = getUnknownCellContentCharacter();
-                } else {
-                    str = Integer.toString(val);
-                }
-                sb.append(str);
+                appendCell(val, target);
             }
-            sb.append(getLineSeparator());
+            target.append(getLineSeparator());
         }
-        return sb.toString();
     }
 }
@@ -0,0 +1,271 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.output;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Renders puzzles onto PNG pages for printing.
+ * Every page holds a fixed number of puzzles in rows and columns.
+ * Pages are rendered and encoded on worker threads from a template of
+ * the empty page and a pre-rendered digit glyph atlas. The finished
+ * pages are handed to a {@link PageWriter} in page order on the
+ * thread calling the sink. The images are 8 bit grayscale and need
+ * neither AWT nor any image library.
+ * <br>Example usage:
+ * <br>
+ * <code>
+ *  PngSheetSink sink = new PngSheetSink(4, (page, png) -&gt;<br>
+ *  &nbsp;&nbsp;Files.write(Paths.get("page" + page + ".png"), png));<br>
+ *  sink.setLayout(2, 3, 48);<br>
+ *  batch.writeTo(sink, 0, batch.size());<br>
+ * </code>
+ * @author Stephan Fuhrmann
+ */
+public final class PngSheetSink implements GameMatrixSink {
+
+    /** The default number of puzzles per row of a page. */
+    public static final int DEFAULT_COLUMNS = 2;
+
+    /** The default number of puzzle rows of a page. */
+    public static final int DEFAULT_ROWS = 3;
+
+    /** The default size of a cell in pixels. */
+    public static final int DEFAULT_CELL_SIZE = 48;
+
+    /** The number of pages per thread rendered ahead of the writer. */
+    private static final int PAGES_AHEAD_PER_THREAD = 2;
+
+    /** Receives the finished pages. */
+    @FunctionalInterface
+    public interface PageWriter {
+        /** Writes one page.
+         * @param page the index of the page, starting at 0.
+         * @param png the PNG image of the page.
+         * @throws IOException if writing fails.
+         */
+        void write(int page, byte[] png) throws IOException;
+    }
+
+    /** The number of worker threads. */
+    private final int threads;
+
+    /** The receiver of the pages. */
+    private final PageWriter writer;
+
+    /** The number of puzzles per row of a page. */
+    private int columns;
+
+    /** The number of puzzle rows of a page. */
+    private int rows;
+
+    /** The size of a cell in pixels. */
+    private int cellSize;
+
+    /** The {@link Deflater} compression level. */
+    private int compressionLevel;
+
+    /** The renderer of the current document. */
+    private SheetRenderer renderer;
+
+    /** The workers of the current document. */
+    private ExecutorService pool;
+
+    /** The pages rendered or in rendering, in page order. */
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    /** The cells of the puzzles of the page being filled. */
+    private byte[] cells;
+
+    /** The number of puzzles on the page being filled. */
+    private int count;
+
+    /** The number of pages handed to the writer. */
+    private int written;
+
+    /**
+     * Creates a sink.
+     * @param threadCount the number of worker threads.
+     * @param inWriter the receiver of the pages.
+     * @throws IllegalArgumentException if the thread count is not
+     * positive.
+     */
+    public PngSheetSink(final int threadCount, final PageWriter inWriter) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException(
+                    "threadCount must be positive: " + threadCount);
+        }
+        threads = threadCount;
+        writer = Objects.requireNonNull(inWriter, "inWriter is null");
+        columns = DEFAULT_COLUMNS;
+        rows = DEFAULT_ROWS;
+        cellSize = DEFAULT_CELL_SIZE;
+        compressionLevel = Deflater.BEST_SPEED;
+    }
+
+    /** Set the page layout. Takes effect with the next document.
+     * @param newColumns the number of puzzles per row of a page.
+     * @param newRows the number of puzzle rows of a page.
+     * @param newCellSize the size of a cell in pixels, at least 12.
+     * @throws IllegalArgumentException if a value is out of range.
+     */
+    public void setLayout(final int newColumns, final int newRows,
+            final int newCellSize) {
+        if (newColumns <= 0 || newRows <= 0 || newCellSize < 12) {
+            throw new IllegalArgumentException("Illegal layout "
+                    + newColumns + "x" + newRows + ", cell size "
+                    + newCellSize);
+        }
+        columns = newColumns;
+        rows = newRows;
+        cellSize = newCellSize;
+    }
+
+    /** Set the PNG compression level. Takes effect with the next
+     * document.
+     * @param set the {@link Deflater} level from 0 to 9.
+     */
+    public void setCompressionLevel(final int set) {
+        if (set < Deflater.NO_COMPRESSION || set > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(
+                    "Illegal compression level: " + set);
+        }
+        compressionLevel = set;
+    }
+
+    /** Get the number of pages handed to the writer.
+     * @return the number of pages of the current or last document.
+     */
+    public int getPages() {
+        return written;
+    }
+
+    @Override
+    public void documentStart() {
+        renderer = new SheetRenderer(columns, rows, cellSize,
+                compressionLevel);
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "PngSheetSink");
+            t.setDaemon(true);
+            return t;
+        });
+        pending.clear();
+        cells = new byte[renderer.getPuzzlesPerPage()
+                * GameMatrix.TOTAL_FIELDS];
+        count = 0;
+        written = 0;
+    }
+
+    @Override
+    public void write(final GameMatrix matrix) throws IOException {
+        int k = count * GameMatrix.TOTAL_FIELDS;
+        for (int row = 0; row < GameMatrix.SIZE; row++) {
+            for (int column = 0; column < GameMatrix.SIZE; column++) {
+                cells[k++] = matrix.get(row, column);
+            }
+        }
+        count++;
+        if (count == renderer.getPuzzlesPerPage()) {
+            submitPage();
+            try {
+                while (pending.size() > threads * PAGES_AHEAD_PER_THREAD) {
+                    writeOldest();
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                // the document is broken, documentEnd may never be called
+                shutdown();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void documentEnd() throws IOException {
+        try {
+            if (count > 0) {
+                submitPage();
+            }
+            while (!pending.isEmpty()) {
+                writeOldest();
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    /** Stops the workers, drops the pages not written yet and frees
+     * the compressors. */
+    private void shutdown() {
+        pending.clear();
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            renderer.close();
+        } catch (InterruptedException e) {
+            // workers may still be compressing, leave the compressors
+            // to the garbage collector
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Hands the page being filled to a worker. */
+    private void submitPage() {
+        final byte[] page = cells;
+        final int pageCount = count;
+        final SheetRenderer pageRenderer = renderer;
+        pending.add(pool.submit(() -> pageRenderer.render(page, pageCount)));
+        cells = new byte[page.length];
+        count = 0;
+    }
+
+    /** Waits for the oldest page and writes it.
+     * @throws IOException if writing fails or the thread was interrupted.
+     */
+    private void writeOldest() throws IOException {
+        byte[] png;
+        try {
+            png = pending.remove().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                    "Interrupted while rendering");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        writer.write(written++, png);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.output;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.PuzzleBatch;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports game matrices by formatting shards on multiple threads.
+ * The matrices are cut into shards of consecutive matrices. Worker
+ * threads format the shards into separate buffers with a
+ * {@link TemplateFormatter}. The calling thread writes the buffers to
+ * the target channel in shard order, framed by the document start and
+ * end. The output is byte-identical to a sequential export.
+ * A bounded number of shards is formatted ahead of the writer, and
+ * their buffers are reused.
+ * <br>Example usage:
+ * <br>
+ * <code>
+ *  TemplateFormatter json = TemplateFormatter.compile(
+ *  new JsonArrayFormatter());<br>
+ *  ShardedExporter exporter = new ShardedExporter(json, 4);<br>
+ *  try (FileChannel out = FileChannel.open(path, WRITE, CREATE)) {<br>
+ *  &nbsp;&nbsp;exporter.export(batch, out);<br>
+ *  }<br>
+ * </code>
+ * @author Stephan Fuhrmann
+ */
+public final class ShardedExporter {
+
+    /** The default number of matrices per shard. */
+    public static final int DEFAULT_SHARD_SIZE = 4096;
+
+    /** The number of shards per thread formatted ahead of the writer. */
+    private static final int SHARDS_AHEAD_PER_THREAD = 2;
+
+    /** The template to format the matrices with. */
+    private final TemplateFormatter template;
+
+    /** The number of worker threads. */
+    private final int threads;
+
+    /** The number of matrices per shard. */
+    private int shardSize;
+
+    /** Formats one matrix of the exported source. */
+    private interface MatrixWriter {
+        /** Formats one matrix of the source.
+         * @param index the index of the matrix in the source, which
+         * is also its position in the document.
+         * @param cells a buffer of {@link GameMatrix#TOTAL_FIELDS}
+         * bytes owned by the calling thread.
+         * @param target the buffer to write to.
+         */
+        void format(int index, byte[] cells, ByteBuffer target);
+    }
+
+    /**
+     * Creates an exporter.
+     * @param inTemplate the template to format the matrices with.
+     * @param threadCount the number of worker threads.
+     * @throws IllegalArgumentException if the thread count is not
+     * positive.
+     */
+    public ShardedExporter(final TemplateFormatter inTemplate,
+            final int threadCount) {
+        template = Objects.requireNonNull(inTemplate, "inTemplate is null");
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException(
+                    "threadCount must be positive: " + threadCount);
+        }
+        threads = threadCount;
+        shardSize = DEFAULT_SHARD_SIZE;
+    }
+
+    /** Set the number of matrices per shard.
+     * Shards are made smaller if their buffer would not fit
+     * into an array.
+     * @param set the new shard size.
+     * @throws IllegalArgumentException if the size is not positive.
+     */
+    public void setShardSize(final int set) {
+        if (set <= 0) {
+            throw new IllegalArgumentException(
+                    "Shard size must be positive: " + set);
+        }
+        this.shardSize = set;
+    }
+
+    /** Exports all matrices of a batch as one document.
+     * The batch must not be modified during the export.
+     * @param batch the matrices to export.
+     * @param target the channel to write the document to.
+     * @return the number of bytes written.
+     * @throws IOException if writing to the channel fails.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    public long export(final PuzzleBatch batch,
+            final WritableByteChannel target)
+            throws IOException, InterruptedException {
+        Objects.requireNonNull(batch, "batch is null");
+        return export(batch.size(), (index, cells, buffer) -> {
+            batch.getCells(index, cells, 0);
+            template.format(cells, 0, index, buffer);
+        }, target);
+    }
+
+    /** Exports matrices as one document.
+     * The list and the matrices must not be modified during the export.
+     * Lists without fast random access, like a {@link java.util.LinkedList},
+     * are copied to an array list first.
+     * @param matrices the matrices to export.
+     * @param target the channel to write the document to.
+     * @return the number of bytes written.
+     * @throws IOException if writing to the channel fails.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    public long export(final List<? extends GameMatrix> matrices,
+            final WritableByteChannel target)
+            throws IOException, InterruptedException {
+        Objects.requireNonNull(matrices, "matrices is null");
+        List<? extends GameMatrix> indexed = matrices instanceof RandomAccess
+                ? matrices : new ArrayList<>(matrices);
+        return export(indexed.size(), (index, cells, buffer) ->
+                template.format(indexed.get(index), index, buffer),
+                target);
+    }
+
+    /** Exports matrices as one document.
+     * @param count the number of matrices.
+     * @param writer formats the matrix with a given index.
+     * @param target the channel to write the document to.
+     * @return the number of bytes written.
+     * @throws IOException if writing to the channel fails.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    private long export(final int count,
+            final MatrixWriter writer,
+            final WritableByteChannel target)
+            throws IOException, InterruptedException {
+        Objects.requireNonNull(target, "target is null");
+        // a shard buffer has to fit into an array, and needs no room
+        // for more matrices than there are
+        int matrixBytes = template.getMaximumMatrixBytes();
+        int size = Math.min(Math.min(shardSize, Math.max(1, count)),
+                Integer.MAX_VALUE / matrixBytes);
+        int shards = (int) (((long) count + size - 1) / size);
+        int ahead = threads * SHARDS_AHEAD_PER_THREAD;
+        // can't overflow, size is capped above
+        int bufferSize = size * matrixBytes;
+        LinkedBlockingQueue<ByteBuffer> buffers = new LinkedBlockingQueue<>();
+        ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ShardedExporter");
+            t.setDaemon(true);
+            return t;
+        });
+        long written = 0;
+        try {
+            ByteBuffer frame = ByteBuffer.allocate(
+                    template.getDocumentStartBytes());
+            template.documentStart(frame);
+            written += writeFully(frame, target);
+
+            int submitted = 0;
+            for (int shard = 0; shard < shards; shard++) {
+                while (submitted < shards && submitted < shard + ahead) {
+                    int from = submitted * size;
+                    int to = Math.min(count, from + size);
+                    pending.add(pool.submit(() -> {
+                        ByteBuffer buffer = buffers.poll();
+                        if (buffer == null) {
+                            buffer = ByteBuffer.allocate(bufferSize);
+                        }
+                        byte[] cells = new byte[GameMatrix.TOTAL_FIELDS];
+                        for (int i = from; i < to; i++) {
+                            writer.format(i, cells, buffer);
+                        }
+                        return buffer;
+                    }));
+                    submitted++;
+                }
+                ByteBuffer buffer = get(pending.remove());
+                written += writeFully(buffer, target);
+                buffer.clear();
+                buffers.add(buffer);
+            }
+
+            frame = ByteBuffer.allocate(template.getDocumentEndBytes());
+            template.documentEnd(frame);
+            written += writeFully(frame, target);
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        return written;
+    }
+
+    /** Waits for a formatted shard.
+     * @param future the future of the shard.
+     * @return the buffer with the formatted shard.
+     * @throws InterruptedException if the calling thread was interrupted.
+     */
+    private static ByteBuffer get(final Future<ByteBuffer> future)
+            throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /** Writes a buffer completely to a channel.
+     * @param buffer the buffer to write, filled from position 0.
+     * @param target the channel to write to.
+     * @return the number of bytes written.
+     * @throws IOException if writing to the channel fails.
+     */
+    private static int writeFully(final ByteBuffer buffer,
+            final WritableByteChannel target) throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return length;
+    }
+}
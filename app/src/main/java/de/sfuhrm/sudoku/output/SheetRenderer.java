@@ -0,0 +1,413 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.output;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Renders pages of puzzles into 8 bit grayscale PNG images.
+ * The empty page with all grid lines is rendered once as a template.
+ * A page is rendered by copying the template and copying one
+ * pre-rendered glyph per set cell from the digit atlas.
+ * Instances can be shared between threads, the pixel and compression
+ * buffers are kept per thread. The compressors hold native memory and
+ * are freed with {@link #close()} once no thread renders anymore.
+ * @author Stephan Fuhrmann
+ */
+final class SheetRenderer {
+
+    /** The digits 1 to 9 as 5 x 7 pixel bitmaps. */
+    private static final String[][] FONT = {
+        {"..#..", ".##..", "..#..", "..#..", "..#..", "..#..", ".###."},
+        {".###.", "#...#", "....#", "...#.", "..#..", ".#...", "#####"},
+        {"#####", "...#.", "..#..", "...#.", "....#", "#...#", ".###."},
+        {"...#.", "..##.", ".#.#.", "#..#.", "#####", "...#.", "...#."},
+        {"#####", "#....", "####.", "....#", "....#", "#...#", ".###."},
+        {"..##.", ".#...", "#....", "####.", "#...#", "#...#", ".###."},
+        {"#####", "....#", "...#.", "..#..", ".#...", ".#...", ".#..."},
+        {".###.", "#...#", "#...#", ".###.", "#...#", "#...#", ".###."},
+        {".###.", "#...#", "#...#", ".####", "....#", "...#.", ".##.."},
+    };
+
+    /** The width of the font bitmaps. */
+    private static final int FONT_WIDTH = 5;
+
+    /** The height of the font bitmaps. */
+    private static final int FONT_HEIGHT = 7;
+
+    /** Sub-samples per pixel and axis when rendering the atlas. */
+    private static final int SUBSAMPLES = 4;
+
+    /** The glyph height relative to the cell size. */
+    private static final double GLYPH_SCALE = 0.6;
+
+    /** The gray value of the paper. */
+    private static final byte WHITE = (byte) 0xff;
+
+    /** The gray value of lines. */
+    private static final byte BLACK = 0;
+
+    /** The width of lines between blocks in pixels. */
+    private static final int THICK_LINE = 3;
+
+    /** The PNG file signature. */
+    private static final byte[] SIGNATURE = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    /** The size of one compressed data chunk. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** The PNG scanline filter type "None". */
+    private static final byte FILTER_NONE = 0;
+
+    /** The number of puzzles per row of the page. */
+    private final int columns;
+
+    /** The number of puzzle rows of the page. */
+    private final int rows;
+
+    /** The size of a cell in pixels. */
+    private final int cellSize;
+
+    /** The page width in pixels. */
+    private final int width;
+
+    /** The page height in pixels. */
+    private final int height;
+
+    /** The bytes per scanline, the filter byte and the pixels. */
+    private final int stride;
+
+    /** The empty page as PNG scanlines. */
+    private final byte[] template;
+
+    /** The glyph width in pixels. */
+    private final int glyphWidth;
+
+    /** The glyph height in pixels. */
+    private final int glyphHeight;
+
+    /** The glyphs of the digits 1 to 9 at index 0 to 8,
+     * row by row. */
+    private final byte[][] atlas;
+
+    /** The compression level. */
+    private final int level;
+
+    /** The page pixels per thread. */
+    private final ThreadLocal<byte[]> pixels;
+
+    /** The compressor per thread. */
+    private final ThreadLocal<Deflater> deflaters;
+
+    /** All compressors created by any thread, guarded by itself. */
+    private final List<Deflater> allDeflaters = new ArrayList<>();
+
+    /** The compressed chunk buffer per thread. */
+    private final ThreadLocal<byte[]> chunks = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[CHUNK_SIZE];
+        }
+    };
+
+    /** Creates a renderer.
+     * @param inColumns the number of puzzles per row of the page.
+     * @param inRows the number of puzzle rows of the page.
+     * @param inCellSize the size of a cell in pixels.
+     * @param inLevel the {@link Deflater} compression level.
+     */
+    SheetRenderer(final int inColumns, final int inRows,
+            final int inCellSize, final int inLevel) {
+        columns = inColumns;
+        rows = inRows;
+        cellSize = inCellSize;
+        level = inLevel;
+        // one cell of margin around the page and between puzzles
+        width = cellSize + columns * (gridSize() + cellSize);
+        height = cellSize + rows * (gridSize() + cellSize);
+        stride = width + 1;
+
+        glyphHeight = Math.max(FONT_HEIGHT,
+                (int) Math.round(cellSize * GLYPH_SCALE));
+        glyphWidth = Math.max(FONT_WIDTH,
+                glyphHeight * FONT_WIDTH / FONT_HEIGHT);
+        atlas = new byte[FONT.length][];
+        for (int digit = 0; digit < FONT.length; digit++) {
+            atlas[digit] = renderGlyph(FONT[digit]);
+        }
+
+        template = new byte[stride * height];
+        Arrays.fill(template, WHITE);
+        for (int y = 0; y < height; y++) {
+            template[y * stride] = FILTER_NONE;
+        }
+        for (int i = 0; i < columns * rows; i++) {
+            drawGrid(xOf(i), yOf(i));
+        }
+        // ThreadLocal.withInitial is not available before Android 8
+        pixels = new ThreadLocal<byte[]>() {
+            @Override
+            protected byte[] initialValue() {
+                return new byte[template.length];
+            }
+        };
+        deflaters = new ThreadLocal<Deflater>() {
+            @Override
+            protected Deflater initialValue() {
+                Deflater deflater = new Deflater(level);
+                synchronized (allDeflaters) {
+                    allDeflaters.add(deflater);
+                }
+                return deflater;
+            }
+        };
+    }
+
+    /** Frees the native memory of all compressors.
+     * Must only be called when no thread is rendering anymore,
+     * the renderer can't be used afterwards.
+     */
+    void close() {
+        synchronized (allDeflaters) {
+            for (Deflater deflater : allDeflaters) {
+                deflater.end();
+            }
+            allDeflaters.clear();
+        }
+    }
+
+    /** Get the number of puzzles per page.
+     * @return the number of puzzles.
+     */
+    int getPuzzlesPerPage() {
+        return columns * rows;
+    }
+
+    /** Get the page width.
+     * @return the width in pixels.
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /** Get the page height.
+     * @return the height in pixels.
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /** The size of a grid including the outer lines.
+     * @return the size in pixels.
+     */
+    private int gridSize() {
+        return GameMatrix.SIZE * cellSize + THICK_LINE;
+    }
+
+    /** The left pixel of a puzzle on the page.
+     * @param index the index of the puzzle on the page.
+     * @return the x coordinate of the outer line.
+     */
+    private int xOf(final int index) {
+        return cellSize + (index % columns) * (gridSize() + cellSize);
+    }
+
+    /** The top pixel of a puzzle on the page.
+     * @param index the index of the puzzle on the page.
+     * @return the y coordinate of the outer line.
+     */
+    private int yOf(final int index) {
+        return cellSize + (index / columns) * (gridSize() + cellSize);
+    }
+
+    /** Renders a glyph by sub-sampling its font bitmap.
+     * @param bitmap the font bitmap.
+     * @return the glyph pixels row by row.
+     */
+    private byte[] renderGlyph(final String[] bitmap) {
+        byte[] glyph = new byte[glyphWidth * glyphHeight];
+        int samples = SUBSAMPLES * SUBSAMPLES;
+        for (int y = 0; y < glyphHeight; y++) {
+            for (int x = 0; x < glyphWidth; x++) {
+                int covered = 0;
+                for (int sy = 0; sy < SUBSAMPLES; sy++) {
+                    int fy = (y * SUBSAMPLES + sy) * FONT_HEIGHT
+                            / (glyphHeight * SUBSAMPLES);
+                    for (int sx = 0; sx < SUBSAMPLES; sx++) {
+                        int fx = (x * SUBSAMPLES + sx) * FONT_WIDTH
+                                / (glyphWidth * SUBSAMPLES);
+                        if (bitmap[fy].charAt(fx) == '#') {
+                            covered++;
+                        }
+                    }
+                }
+                glyph[y * glyphWidth + x] =
+                        (byte) (0xff - 0xff * covered / samples);
+            }
+        }
+        return glyph;
+    }
+
+    /** Draws the lines of one grid into the template.
+     * @param left the x coordinate of the outer line.
+     * @param top the y coordinate of the outer line.
+     */
+    private void drawGrid(final int left, final int top) {
+        int size = gridSize();
+        for (int i = 0; i <= GameMatrix.SIZE; i++) {
+            int offset = i * cellSize;
+            int thickness = i % GameMatrix.BLOCK_SIZE == 0 ? THICK_LINE : 1;
+            // thin lines are drawn in the middle of the thick line space
+            int start = thickness == 1 ? offset + 1 : offset;
+            fill(left + start, top, thickness, size);
+            fill(left, top + start, size, thickness);
+        }
+    }
+
+    /** Fills a rectangle of the template with black.
+     * @param x the left pixel.
+     * @param y the top pixel.
+     * @param w the width.
+     * @param h the height.
+     */
+    private void fill(final int x, final int y, final int w, final int h) {
+        for (int row = y; row < y + h; row++) {
+            int base = row * stride + 1 + x;
+            Arrays.fill(template, base, base + w, BLACK);
+        }
+    }
+
+    /** Renders and encodes a page.
+     * @param cells the cell values of the puzzles in row-major order.
+     * @param count the number of puzzles on the page.
+     * @return the PNG image.
+     */
+    byte[] render(final byte[] cells, final int count) {
+        byte[] page = pixels.get();
+        System.arraycopy(template, 0, page, 0, template.length);
+        // center the glyph in the cell, right of the line
+        int dx = 1 + (THICK_LINE - 1) / 2 + (cellSize - glyphWidth) / 2;
+        int dy = 1 + (THICK_LINE - 1) / 2 + (cellSize - glyphHeight) / 2;
+        for (int i = 0; i < count; i++) {
+            int left = xOf(i);
+            int top = yOf(i);
+            int k = i * GameMatrix.TOTAL_FIELDS;
+            for (int row = 0; row < GameMatrix.SIZE; row++) {
+                for (int column = 0; column < GameMatrix.SIZE; column++) {
+                    byte value = cells[k++];
+                    if (value != GameMatrix.UNSET) {
+                        blit(page, atlas[value - 1],
+                                left + column * cellSize + dx,
+                                top + row * cellSize + dy);
+                    }
+                }
+            }
+        }
+        return encode(page);
+    }
+
+    /** Copies a glyph onto a page.
+     * @param page the page scanlines.
+     * @param glyph the glyph pixels.
+     * @param x the left pixel.
+     * @param y the top pixel.
+     */
+    private void blit(final byte[] page, final byte[] glyph,
+            final int x, final int y) {
+        for (int row = 0; row < glyphHeight; row++) {
+            System.arraycopy(glyph, row * glyphWidth,
+                    page, (y + row) * stride + 1 + x, glyphWidth);
+        }
+    }
+
+    /** Encodes page scanlines as PNG.
+     * @param page the page scanlines.
+     * @return the PNG image.
+     */
+    private byte[] encode(final byte[] page) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                page.length / 8);
+        out.write(SIGNATURE, 0, SIGNATURE.length);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;  // bit depth
+        header[9] = 0;  // grayscale
+        // compression, filter and interlace methods are 0
+        writeChunk(out, "IHDR", header, header.length);
+
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(page);
+        deflater.finish();
+        byte[] chunk = chunks.get();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            if (length > 0) {
+                writeChunk(out, "IDAT", chunk, length);
+            }
+        }
+        writeChunk(out, "IEND", chunk, 0);
+        return out.toByteArray();
+    }
+
+    /** Writes one PNG chunk.
+     * @param out the stream to write to.
+     * @param type the chunk type.
+     * @param data the chunk data.
+     * @param length the length of the chunk data.
+     */
+    private static void writeChunk(final ByteArrayOutputStream out,
+            final String type, final byte[] data, final int length) {
+        byte[] word = new byte[4];
+        putInt(word, 0, length);
+        out.write(word, 0, word.length);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        out.write(typeBytes, 0, typeBytes.length);
+        out.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        putInt(word, 0, (int) crc.getValue());
+        out.write(word, 0, word.length);
+    }
+
+    /** Stores a big-endian int.
+     * @param target the array to store to.
+     * @param offset the index of the first byte.
+     * @param value the value to store.
+     */
+    private static void putInt(final byte[] target, final int offset,
+            final int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.output;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.GameMatrixFactory;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Formats game matrices by copying a precompiled byte template.
+ * The template of a text formatter is its output for an empty matrix,
+ * together with the offsets of the 81 cells in it. Formatting a matrix
+ * copies the template into a {@link ByteBuffer} and writes one digit
+ * byte per set cell. The output is byte-identical to the UTF-8
+ * encoded output of the formatter the template was compiled from.
+ * <br>
+ * Instances are immutable and can be shared between threads. The
+ * position of a matrix in the document is passed explicitly instead
+ * of being counted.
+ * <br>Example usage:
+ * <br>
+ * <code>
+ *  JsonArrayFormatter json = new JsonArrayFormatter();<br>
+ *  json.setIndent(true);<br>
+ *  TemplateFormatter template = TemplateFormatter.compile(json);<br>
+ *  template.documentStart(buffer);<br>
+ *  template.format(matrix, 0, buffer);<br>
+ *  template.documentEnd(buffer);<br>
+ * </code>
+ * @author Stephan Fuhrmann
+ */
+public final class TemplateFormatter {
+
+    /** The character marking cell slots while compiling. */
+    private static final char SLOT_MARKER = '\0';
+
+    /** The document start bytes. */
+    private final byte[] start;
+
+    /** The template of the first matrix in a document. */
+    private final byte[] first;
+
+    /** The template of the following matrices in a document. */
+    private final byte[] next;
+
+    /** The document end bytes. */
+    private final byte[] end;
+
+    /** The cell offsets in {@link #first} in row-major order. */
+    private final int[] firstSlots;
+
+    /** The cell offsets in {@link #next} in row-major order. */
+    private final int[] nextSlots;
+
+    /** Creates a template.
+     * @param inStart the document start bytes.
+     * @param inFirst the template of the first matrix.
+     * @param inNext the template of the following matrices.
+     * @param inEnd the document end bytes.
+     * @param unknown the byte for unset cells.
+     */
+    private TemplateFormatter(final byte[] inStart,
+            final byte[] inFirst,
+            final byte[] inNext,
+            final byte[] inEnd,
+            final byte unknown) {
+        start = inStart;
+        first = inFirst;
+        next = inNext;
+        end = inEnd;
+        firstSlots = slots(first, unknown);
+        nextSlots = slots(next, unknown);
+    }
+
+    /** Finds the cell slots in a template and fills them with the
+     * byte for unset cells.
+     * @param template the template with {@link #SLOT_MARKER} bytes.
+     * @param unknown the byte for unset cells.
+     * @return the offsets of the cells in row-major order.
+     */
+    private static int[] slots(final byte[] template, final byte unknown) {
+        int[] result = new int[GameMatrix.TOTAL_FIELDS];
+        int k = 0;
+        for (int i = 0; i < template.length; i++) {
+            if (template[i] == SLOT_MARKER) {
+                if (k == result.length) {
+                    throw new IllegalArgumentException(
+                            "More than " + result.length
+                            + " cells in template");
+                }
+                result[k++] = i;
+                template[i] = unknown;
+            }
+        }
+        if (k != result.length) {
+            throw new IllegalArgumentException(
+                    "Found " + k + " cells in template");
+        }
+        return result;
+    }
+
+    /** Compiles the template of a formatter.
+     * The current settings of the formatter are used. Changing them
+     * later does not change the template. Compiling starts and ends
+     * a document on the formatter, so it must not be called while
+     * the formatter is in the middle of a document.
+     * @param formatter one of the text formatters of this package.
+     * Its unknown cell content must be a single ASCII character.
+     * @return the compiled template.
+     * @throws IllegalArgumentException if the formatter can not be
+     * expressed as a template.
+     */
+    public static TemplateFormatter compile(
+            final GameMatrixFormatter formatter) {
+        Objects.requireNonNull(formatter, "formatter is null");
+        if (!(formatter instanceof AbstractTextFormatter)) {
+            throw new IllegalArgumentException(
+                    "Unsupported formatter " + formatter.getClass());
+        }
+        AbstractTextFormatter text = (AbstractTextFormatter) formatter;
+        String unknown = text.getUnknownCellContentCharacter();
+        if (unknown.length() != 1 || unknown.charAt(0) >= 0x80) {
+            throw new IllegalArgumentException(
+                    "Unknown cell content must be one ASCII character: '"
+                    + unknown + "'");
+        }
+
+        GameMatrix empty = new GameMatrixFactory().newGameMatrix();
+        String startText = text.documentStart();
+        String firstText;
+        String nextText;
+        text.setUnknownCellContentCharacter(
+                Character.toString(SLOT_MARKER));
+        try {
+            firstText = text.format(empty);
+            nextText = text.format(empty);
+        } finally {
+            text.setUnknownCellContentCharacter(unknown);
+        }
+        String endText = text.documentEnd();
+        if (startText.indexOf(SLOT_MARKER) >= 0
+                || endText.indexOf(SLOT_MARKER) >= 0) {
+            throw new IllegalArgumentException(
+                    "Document start or end contains a NUL character");
+        }
+        return new TemplateFormatter(
+                startText.getBytes(StandardCharsets.UTF_8),
+                firstText.getBytes(StandardCharsets.UTF_8),
+                nextText.getBytes(StandardCharsets.UTF_8),
+                endText.getBytes(StandardCharsets.UTF_8),
+                (byte) unknown.charAt(0));
+    }
+
+    /** Get the number of bytes of the document start.
+     * @return the number of bytes written by
+     * {@link #documentStart(ByteBuffer)}.
+     */
+    public int getDocumentStartBytes() {
+        return start.length;
+    }
+
+    /** Get the number of bytes of the document end.
+     * @return the number of bytes written by
+     * {@link #documentEnd(ByteBuffer)}.
+     */
+    public int getDocumentEndBytes() {
+        return end.length;
+    }
+
+    /** Get the maximum number of bytes of one formatted matrix.
+     * @return the size of the larger matrix template.
+     */
+    public int getMaximumMatrixBytes() {
+        return Math.max(first.length, next.length);
+    }
+
+    /** Get the number of bytes of a formatted matrix.
+     * @param index the position of the matrix in the document,
+     * starting at 0.
+     * @return the number of bytes written by
+     * {@link #format(GameMatrix, long, ByteBuffer)}.
+     */
+    public int getMatrixBytes(final long index) {
+        return index == 0 ? first.length : next.length;
+    }
+
+    /** Writes the document start.
+     * @param target the buffer to write to.
+     * @throws BufferOverflowException if the buffer has not enough
+     * space left.
+     */
+    public void documentStart(final ByteBuffer target) {
+        target.put(start);
+    }
+
+    /** Writes the document end.
+     * @param target the buffer to write to.
+     * @throws BufferOverflowException if the buffer has not enough
+     * space left.
+     */
+    public void documentEnd(final ByteBuffer target) {
+        target.put(end);
+    }
+
+    /** Writes a formatted matrix.
+     * @param matrix the matrix to format.
+     * @param index the position of the matrix in the document,
+     * starting at 0. The first matrix may be formatted without a
+     * separator.
+     * @param target the buffer to write to.
+     * @throws BufferOverflowException if the buffer has not enough
+     * space left. Nothing is written in this case.
+     */
+    public void format(final GameMatrix matrix, final long index,
+            final ByteBuffer target) {
+        int base = copyTemplate(index, target);
+        int[] slots = index == 0 ? firstSlots : nextSlots;
+        int k = 0;
+        for (int row = 0; row < GameMatrix.SIZE; row++) {
+            for (int column = 0; column < GameMatrix.SIZE; column++) {
+                byte value = matrix.get(row, column);
+                if (value != GameMatrix.UNSET) {
+                    target.put(base + slots[k], (byte) ('0' + value));
+                }
+                k++;
+            }
+        }
+    }
+
+    /** Writes a formatted matrix given as flat cell values.
+     * @param cells the cell values in row-major order.
+     * @param offset the index of the first cell in {@code cells}.
+     * @param index the position of the matrix in the document,
+     * starting at 0.
+     * @param target the buffer to write to.
+     * @throws BufferOverflowException if the buffer has not enough
+     * space left. Nothing is written in this case.
+     * @see de.sfuhrm.sudoku.PuzzleBatch#getCells(int, byte[], int)
+     */
+    public void format(final byte[] cells, final int offset,
+            final long index, final ByteBuffer target) {
+        int base = copyTemplate(index, target);
+        int[] slots = index == 0 ? firstSlots : nextSlots;
+        if (target.hasArray()) {
+            byte[] array = target.array();
+            int arrayBase = target.arrayOffset() + base;
+            for (int i = 0; i < GameMatrix.TOTAL_FIELDS; i++) {
+                byte value = cells[offset + i];
+                if (value != GameMatrix.UNSET) {
+                    array[arrayBase + slots[i]] = (byte) ('0' + value);
+                }
+            }
+        } else {
+            for (int i = 0; i < GameMatrix.TOTAL_FIELDS; i++) {
+                byte value = cells[offset + i];
+                if (value != GameMatrix.UNSET) {
+                    target.put(base + slots[i], (byte) ('0' + value));
+                }
+            }
+        }
+    }
+
+    /** Copies the matrix template into the buffer.
+     * @param index the position of the matrix in the document.
+     * @param target the buffer to write to.
+     * @return the buffer position the template was copied to.
+     */
+    private int copyTemplate(final long index, final ByteBuffer target) {
+        byte[] template = index == 0 ? first : next;
+        if (target.remaining() < template.length) {
+            throw new BufferOverflowException();
+        }
+        int base = target.position();
+        target.put(template);
+        return base;
+    }
+}
@@ -0,0 +1,65 @@
+package com.guille.songoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ByteArrayPoolTest {
+    @Test
+    public void acquire_reusesReleasedArray() {
+        ByteArrayPool pool = new ByteArrayPool(2);
+        byte[] first = pool.acquire(100);
+        pool.release(first);
+
+        assertSame(first, pool.acquire(100));
+        assertEquals(1, pool.getAllocated());
+    }
+
+    @Test
+    public void acquire_onlyReusesSameLength() {
+        ByteArrayPool pool = new ByteArrayPool(2);
+        byte[] big = pool.acquire(100);
+        pool.release(big);
+
+        byte[] small = pool.acquire(50);
+        assertEquals(50, small.length);
+        assertNotSame(big, small);
+        assertEquals(2, pool.getAllocated());
+        // The big one is still there
+        assertSame(big, pool.acquire(100));
+    }
+
+    @Test
+    public void acquire_keepsSteadyStateWithoutAllocating() {
+        ByteArrayPool pool = new ByteArrayPool(2);
+        for (int frame = 0; frame < 10; frame++) {
+            byte[] color = pool.acquire(150);
+            byte[] gray = pool.acquire(100);
+            pool.release(color);
+            pool.release(gray);
+        }
+        assertEquals(2, pool.getAllocated());
+    }
+
+    @Test
+    public void release_evictsOldestWhenFull() {
+        ByteArrayPool pool = new ByteArrayPool(2);
+        byte[] a = pool.acquire(10);
+        byte[] b = pool.acquire(20);
+        byte[] c = pool.acquire(30);
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+
+        // a was released longest ago and got dropped
+        assertNotSame(a, pool.acquire(10));
+        assertSame(b, pool.acquire(20));
+        assertSame(c, pool.acquire(30));
+        assertEquals(4, pool.getAllocated());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsEmptyPool() {
+        new ByteArrayPool(0);
+    }
+}
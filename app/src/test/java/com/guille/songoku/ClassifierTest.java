@@ -0,0 +1,129 @@
+package com.guille.songoku;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ClassifierTest {
+    private static final int PIXELS = Classifier.IMG_HEIGHT * Classifier.IMG_WIDTH;
+
+    // Stands in for the interpreter: the guessed number comes from the first pixel of each image,
+    // and like TFLite it refuses input that doesn't match the tensor
+    private static class FakeEngine implements InferenceEngine {
+        final int[] shape = {1, Classifier.IMG_HEIGHT, Classifier.IMG_WIDTH, 1};
+        final List<Integer> resizes = new ArrayList<>();
+        int runs = 0;
+
+        @Override
+        public int[] getInputShape() {
+            return shape.clone();
+        }
+
+        @Override
+        public void resizeInput(int[] newShape) {
+            System.arraycopy(newShape, 0, shape, 0, shape.length);
+            resizes.add(newShape[0]);
+        }
+
+        @Override
+        public void run(ByteBuffer input, float[][] output) {
+            if (input.capacity() != 4 * shape[0] * PIXELS || output.length != shape[0]) {
+                throw new IllegalArgumentException("Input doesn't match shape " + Arrays.toString(shape));
+            }
+            for (int n = 0; n < shape[0]; n++) {
+                float ink = input.getFloat(4 * n * PIXELS);
+                Arrays.fill(output[n], 0.01f);
+                output[n][Math.round(ink * 9)] = 0.9f;
+            }
+            runs++;
+        }
+    }
+
+    // An image the fake engine reads as the given number
+    private static byte[] image(int number) {
+        byte[] pixels = new byte[PIXELS];
+        Arrays.fill(pixels, (byte) 255);
+        pixels[0] = (byte) (255 - Math.round(number * 255 / 9.0f));
+        return pixels;
+    }
+
+    private static byte[][] images(int... numbers) {
+        byte[][] result = new byte[Classifier.MAX_BATCH_SIZE][];
+        for (int n = 0; n < result.length; n++) {
+            result[n] = image(n < numbers.length ? numbers[n] : 0);
+        }
+        return result;
+    }
+
+    @Test
+    public void classify_batchMatchesSingleImages() {
+        int[] numbers = {3, 7, 0, 9, 1};
+        byte[][] batch = images(numbers);
+        Classifier classifier = new Classifier(new FakeEngine());
+
+        Result[] together = classifier.classify(batch, numbers.length);
+        assertEquals(numbers.length, together.length);
+        for (int n = 0; n < numbers.length; n++) {
+            Result single = classifier.classify(new byte[][] {batch[n]}, 1)[0];
+            assertEquals(numbers[n], together[n].getNumber());
+            assertEquals(single.getNumber(), together[n].getNumber());
+            assertEquals(single.getProbability(), together[n].getProbability(), 0.0f);
+        }
+    }
+
+    @Test
+    public void classify_resizesOnlyWhenBatchSizeChanges() {
+        FakeEngine engine = new FakeEngine();
+        Classifier classifier = new Classifier(engine);
+        byte[][] batch = images(4, 5, 6);
+
+        classifier.classify(batch, 1);
+        classifier.classify(batch, 3);
+        classifier.classify(batch, 3);
+        classifier.classify(batch, 2);
+        classifier.classify(batch, 3);
+
+        assertEquals(Arrays.asList(3, 2, 3), engine.resizes);
+        assertEquals(5, engine.runs);
+    }
+
+    @Test
+    public void classify_fullSudoku() {
+        FakeEngine engine = new FakeEngine();
+        Classifier classifier = new Classifier(engine);
+        int[] numbers = new int[Classifier.MAX_BATCH_SIZE];
+        for (int n = 0; n < numbers.length; n++) {
+            numbers[n] = n % 10;
+        }
+
+        Result[] results = classifier.classify(images(numbers), numbers.length);
+        for (int n = 0; n < numbers.length; n++) {
+            assertEquals(numbers[n], results[n].getNumber());
+        }
+    }
+
+    @Test
+    public void classify_emptyBatchSkipsEngine() {
+        FakeEngine engine = new FakeEngine();
+        Result[] results = new Classifier(engine).classify(images(), 0);
+
+        assertEquals(0, results.length);
+        assertEquals(0, engine.runs);
+        assertTrue(engine.resizes.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void classify_tooManyImages() {
+        new Classifier(new FakeEngine()).classify(new byte[82][PIXELS], 82);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void classify_wrongImageSize() {
+        new Classifier(new FakeEngine()).classify(new byte[][] {new byte[10]}, 1);
+    }
+}
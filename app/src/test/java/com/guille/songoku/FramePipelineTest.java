@@ -0,0 +1,240 @@
+package com.guille.songoku;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class FramePipelineTest {
+    // A numbered frame, the slots tell frames apart by identity
+    private static class TestFrame {
+        final int number;
+
+        TestFrame(int number) {
+            this.number = number;
+        }
+    }
+
+    private static final int FRAMES = 200;
+
+    // Numbers of the frames that went through all stages, and of the dropped ones
+    private final List<Integer> finished = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> dropped = Collections.synchronizedList(new ArrayList<>());
+
+    private FramePipeline<TestFrame> sleepingPipeline() {
+        FramePipeline<TestFrame> pipeline = new FramePipeline<>();
+        pipeline.addStage("fast", frame -> Thread.sleep(1));
+        pipeline.addStage("slow", frame -> Thread.sleep(5));
+        pipeline.addStage("last", frame -> finished.add(frame.number));
+        pipeline.setDropHandler(frame -> dropped.add(frame.number));
+        return pipeline;
+    }
+
+    private static void feed(FramePipeline<TestFrame> pipeline, int from, int to) throws InterruptedException {
+        for (int i = from; i < to; i++) {
+            final TestFrame frame = new TestFrame(i);
+            pipeline.acquire(() -> frame);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void frames_finishInOrder() throws Exception {
+        FramePipeline<TestFrame> pipeline = sleepingPipeline();
+        pipeline.start();
+        feed(pipeline, 0, FRAMES);
+        pipeline.stop();
+
+        assertFalse(finished.isEmpty());
+        for (int i = 1; i < finished.size(); i++) {
+            assertTrue("out of order at " + i, finished.get(i - 1) < finished.get(i));
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void frames_areFinishedOrDroppedExactlyOnce() throws Exception {
+        FramePipeline<TestFrame> pipeline = sleepingPipeline();
+        pipeline.start();
+        feed(pipeline, 0, FRAMES);
+        pipeline.stop();
+
+        // The slow stage can't keep up, so some frames have to be dropped
+        assertFalse(dropped.isEmpty());
+        int[] seen = new int[FRAMES];
+        for (int frame : finished) {
+            seen[frame]++;
+        }
+        for (int frame : dropped) {
+            seen[frame]++;
+        }
+        for (int i = 0; i < FRAMES; i++) {
+            assertEquals("frame " + i, 1, seen[i]);
+        }
+
+        List<StageStats> stats = pipeline.getStageStats();
+        assertEquals(FRAMES, pipeline.getAcquireStats().getProcessed());
+        assertEquals(finished.size(), stats.get(2).getProcessed());
+        assertTrue(stats.get(1).getDropped() > 0);
+    }
+
+    @Test(timeout = 20000)
+    public void stop_dropsWaitingFramesAndEndsWorkers() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        FramePipeline<TestFrame> pipeline = new FramePipeline<>();
+        pipeline.addStage("stuck", frame -> {
+            entered.countDown();
+            Thread.sleep(60000);
+        });
+        pipeline.setDropHandler(frame -> dropped.add(frame.number));
+        pipeline.start();
+        feed(pipeline, 0, 1);
+        entered.await();
+        // Frame 0 is in the stage, frame 1 waits in its slot
+        feed(pipeline, 1, 2);
+        pipeline.stop();
+
+        assertEquals(2, dropped.size());
+        assertTrue(dropped.contains(0));
+        assertTrue(dropped.contains(1));
+        // Interrupted in the middle of the frame
+        assertEquals(1, pipeline.getStageStats().get(0).getFailed());
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertNotEquals("Pipeline-stuck", thread.getName());
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void acquire_afterStopDropsFrame() throws Exception {
+        FramePipeline<TestFrame> pipeline = sleepingPipeline();
+        pipeline.start();
+        pipeline.stop();
+        feed(pipeline, 0, 1);
+
+        assertEquals(Collections.singletonList(0), dropped);
+        assertTrue(finished.isEmpty());
+    }
+
+    @Test(timeout = 20000)
+    public void failingStage_dropsFrame() throws Exception {
+        FramePipeline<TestFrame> pipeline = new FramePipeline<>();
+        pipeline.addStage("fails", frame -> {
+            throw new IllegalStateException("no sudoku");
+        });
+        pipeline.addStage("last", frame -> finished.add(frame.number));
+        pipeline.setDropHandler(frame -> dropped.add(frame.number));
+        pipeline.start();
+        feed(pipeline, 0, 1);
+        while (dropped.isEmpty()) {
+            Thread.sleep(1);
+        }
+        pipeline.stop();
+
+        assertEquals(Collections.singletonList(0), dropped);
+        assertTrue(finished.isEmpty());
+        assertEquals(1, pipeline.getStageStats().get(0).getFailed());
+    }
+
+    @Test(timeout = 20000)
+    public void failingStage_isReportedOnce() throws Exception {
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        FramePipeline<TestFrame> pipeline = new FramePipeline<>();
+        pipeline.addStage("fails", frame -> {
+            throw new IllegalStateException("frame " + frame.number);
+        });
+        pipeline.setDropHandler(frame -> dropped.add(frame.number));
+        pipeline.setErrorHandler((stage, error, stopped) -> {
+            assertEquals("fails", stage);
+            assertFalse(stopped);
+            errors.add(error);
+        });
+        pipeline.start();
+        for (int i = 0; i < 10; i++) {
+            feed(pipeline, i, i + 1);
+            while (dropped.size() <= i) {
+                Thread.sleep(1);
+            }
+        }
+        pipeline.stop();
+
+        // Failing on every frame, but the later failures fall into the report interval
+        assertEquals(1, errors.size());
+        assertEquals("frame 0", errors.get(0).getMessage());
+        assertEquals(10, pipeline.getStageStats().get(0).getFailed());
+    }
+
+    @Test(timeout = 20000)
+    public void stageThrowingError_keepsWorkerAlive() throws Exception {
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        FramePipeline<TestFrame> pipeline = new FramePipeline<>();
+        pipeline.addStage("native", frame -> {
+            if (frame.number == 0) {
+                throw new UnsatisfiedLinkError("no opencv");
+            }
+        });
+        pipeline.addStage("last", frame -> finished.add(frame.number));
+        pipeline.setDropHandler(frame -> dropped.add(frame.number));
+        pipeline.setErrorHandler((stage, error, stopped) -> errors.add(error));
+        pipeline.start();
+        feed(pipeline, 0, 1);
+        while (dropped.isEmpty()) {
+            Thread.sleep(1);
+        }
+        feed(pipeline, 1, 2);
+        while (finished.isEmpty()) {
+            Thread.sleep(1);
+        }
+        pipeline.stop();
+
+        assertEquals(Collections.singletonList(1), finished);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof UnsatisfiedLinkError);
+    }
+
+    @Test(timeout = 20000)
+    public void failingSource_isReported() throws Exception {
+        List<String> stages = Collections.synchronizedList(new ArrayList<>());
+        FramePipeline<TestFrame> pipeline = sleepingPipeline();
+        pipeline.setErrorHandler((stage, error, stopped) -> stages.add(stage));
+        pipeline.start();
+        pipeline.acquire(() -> {
+            throw new IllegalArgumentException("odd frame size");
+        });
+        pipeline.stop();
+
+        assertEquals(Collections.singletonList("acquire"), stages);
+        assertEquals(1, pipeline.getAcquireStats().getFailed());
+    }
+
+    @Test(timeout = 20000)
+    public void stop_doesNotReportInterruptedStage() throws Exception {
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch entered = new CountDownLatch(1);
+        FramePipeline<TestFrame> pipeline = new FramePipeline<>();
+        pipeline.addStage("stuck", frame -> {
+            entered.countDown();
+            Thread.sleep(60000);
+        });
+        pipeline.setErrorHandler((stage, error, stopped) -> errors.add(error));
+        pipeline.start();
+        feed(pipeline, 0, 1);
+        entered.await();
+        pipeline.stop();
+
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addStage_afterStartFails() throws Exception {
+        FramePipeline<TestFrame> pipeline = sleepingPipeline();
+        pipeline.start();
+        try {
+            pipeline.addStage("late", frame -> { });
+        } finally {
+            pipeline.stop();
+        }
+    }
+}
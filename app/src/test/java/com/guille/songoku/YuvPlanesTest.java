@@ -0,0 +1,160 @@
+package com.guille.songoku;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class YuvPlanesTest {
+    // Bytes in row padding and in the other chroma plane, never a pixel value in these tests
+    private static final byte PADDING = (byte) 0xEE;
+
+    private static byte pixel(int plane, int row, int col) {
+        return (byte) (plane * 64 + row * 8 + col);
+    }
+
+    // A width x height plane as a camera would deliver it, the last row cut after its last pixel
+    private static ByteBuffer plane(int plane, int width, int height, int rowStride, int pixelStride) {
+        int rowLength = (width - 1) * pixelStride + 1;
+        byte[] data = new byte[(height - 1) * rowStride + rowLength];
+        Arrays.fill(data, PADDING);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                data[row * rowStride + col * pixelStride] = pixel(plane, row, col);
+            }
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    private static byte[] packed(int plane, int width, int height) {
+        byte[] result = new byte[width * height];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                result[row * width + col] = pixel(plane, row, col);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void copyPlane_tightlyPacked() {
+        byte[] dst = new byte[6 * 4];
+        new YuvPlanes().copyPlane(plane(0, 6, 4, 6, 1), 6, 1, 6, 4, dst, 0);
+        assertArrayEquals(packed(0, 6, 4), dst);
+    }
+
+    @Test
+    public void copyPlane_rowPadding() {
+        byte[] dst = new byte[6 * 4];
+        new YuvPlanes().copyPlane(plane(0, 6, 4, 8, 1), 8, 1, 6, 4, dst, 0);
+        assertArrayEquals(packed(0, 6, 4), dst);
+    }
+
+    @Test
+    public void copyPlane_pixelStrideTwoWithPadding() {
+        byte[] dst = new byte[3 * 2];
+        new YuvPlanes().copyPlane(plane(1, 3, 2, 8, 2), 8, 2, 3, 2, dst, 0);
+        assertArrayEquals(packed(1, 3, 2), dst);
+    }
+
+    @Test
+    public void copyPlane_atOffsetKeepsSourcePosition() {
+        ByteBuffer src = plane(0, 4, 2, 5, 1);
+        byte[] dst = new byte[3 + 4 * 2];
+        new YuvPlanes().copyPlane(src, 5, 1, 4, 2, dst, 3);
+
+        assertEquals(0, src.position());
+        assertEquals(0, dst[0]);
+        byte[] copied = Arrays.copyOfRange(dst, 3, dst.length);
+        assertArrayEquals(packed(0, 4, 2), copied);
+    }
+
+    @Test
+    public void copyPlane_directBuffer() {
+        ByteBuffer heap = plane(0, 6, 4, 8, 1);
+        ByteBuffer direct = ByteBuffer.allocateDirect(heap.capacity());
+        direct.put(heap);
+        direct.flip();
+        byte[] dst = new byte[6 * 4];
+        new YuvPlanes().copyPlane(direct, 8, 1, 6, 4, dst, 0);
+        assertArrayEquals(packed(0, 6, 4), dst);
+    }
+
+    @Test
+    public void packI420_interleavedChroma() {
+        int width = 6;
+        int height = 4;
+        // Semi-planar chroma: U and V share one buffer, V starts one byte after U
+        int uvRowStride = 8;
+        byte[] uv = new byte[(height / 2 - 1) * uvRowStride + width];
+        Arrays.fill(uv, PADDING);
+        for (int row = 0; row < height / 2; row++) {
+            for (int col = 0; col < width / 2; col++) {
+                uv[row * uvRowStride + 2 * col] = pixel(1, row, col);
+                uv[row * uvRowStride + 2 * col + 1] = pixel(2, row, col);
+            }
+        }
+        ByteBuffer u = ByteBuffer.wrap(uv);
+        ByteBuffer v = ByteBuffer.wrap(uv, 1, uv.length - 1).slice();
+
+        byte[] dst = new byte[YuvPlanes.i420Size(width, height)];
+        new YuvPlanes().packI420(plane(0, width, height, 8, 1), 8, u, v, uvRowStride, 2,
+                width, height, dst);
+
+        ByteBuffer expected = ByteBuffer.allocate(dst.length);
+        expected.put(packed(0, width, height));
+        expected.put(packed(1, width / 2, height / 2));
+        expected.put(packed(2, width / 2, height / 2));
+        assertArrayEquals(expected.array(), dst);
+    }
+
+    @Test
+    public void packI420_planarChroma() {
+        int width = 4;
+        int height = 2;
+        byte[] dst = new byte[YuvPlanes.i420Size(width, height)];
+        new YuvPlanes().packI420(plane(0, width, height, width, 1), width,
+                plane(1, 2, 1, 2, 1), plane(2, 2, 1, 2, 1), 2, 1, width, height, dst);
+
+        ByteBuffer expected = ByteBuffer.allocate(dst.length);
+        expected.put(packed(0, width, height));
+        expected.put(packed(1, 2, 1));
+        expected.put(packed(2, 2, 1));
+        assertArrayEquals(expected.array(), dst);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void packI420_bufferTooSmall() {
+        new YuvPlanes().packI420(plane(0, 4, 2, 4, 1), 4,
+                plane(1, 2, 1, 2, 1), plane(2, 2, 1, 2, 1), 2, 1, 4, 2, new byte[8]);
+    }
+
+    @Test
+    public void i420Size() {
+        assertEquals(640 * 480 * 3 / 2, YuvPlanes.i420Size(640, 480));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void i420Size_oddWidth() {
+        YuvPlanes.i420Size(641, 480);
+    }
+
+    @Test
+    public void normalizeRotation_everyQuarterTurn() {
+        assertEquals(0, YuvPlanes.normalizeRotation(0));
+        assertEquals(90, YuvPlanes.normalizeRotation(90));
+        assertEquals(180, YuvPlanes.normalizeRotation(180));
+        assertEquals(270, YuvPlanes.normalizeRotation(270));
+        assertEquals(0, YuvPlanes.normalizeRotation(360));
+        assertEquals(90, YuvPlanes.normalizeRotation(450));
+        assertEquals(270, YuvPlanes.normalizeRotation(-90));
+        assertEquals(180, YuvPlanes.normalizeRotation(-180));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void normalizeRotation_notQuarterTurn() {
+        YuvPlanes.normalizeRotation(45);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures riddles per second of {@link Creator#createRiddle(GameMatrix)}
+ * against the former reduction that ran a new {@link Solver}
+ * for every cell it tried to clear.
+ * Both reduce the same full matrices.
+ * Run with the number of riddles and an optional seed as arguments.
+ * @author Stephan Fuhrmann
+ */
+public final class RiddleReducerBenchmark {
+
+    /** Random clears that may fail before the former reduction
+     * switches to its deterministic loop. */
+    private static final int RANDOM_CLEAR = 10;
+
+    /** Rounds run before the measured one to warm up the JIT. */
+    private static final int WARMUP_ROUNDS = 2;
+
+    /** No instances. */
+    private RiddleReducerBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of riddles per round (default 200)
+     * and the seed (default 1).
+     */
+    public static void main(final String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        Random random = new Random(seed);
+        GameMatrix[] full = new GameMatrix[count];
+        for (int i = 0; i < count; i++) {
+            full[i] = Creator.createFull(random);
+        }
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean warmup = round < WARMUP_ROUNDS;
+            double solver = run("solver per cell", full, seed, false, warmup);
+            double inPlace = run("in place", full, seed, true, warmup);
+            if (!warmup) {
+                System.out.printf("speedup %.1fx%n", inPlace / solver);
+            }
+        }
+    }
+
+    /**
+     * Reduces all full matrices once.
+     * @param name the name to print.
+     * @param full the full matrices to reduce.
+     * @param seed the seed for the reduction order.
+     * @param inPlace whether to use the current reduction.
+     * @param quiet whether to skip printing.
+     * @return the riddles per second.
+     */
+    private static double run(final String name,
+            final GameMatrix[] full,
+            final long seed,
+            final boolean inPlace,
+            final boolean quiet) {
+        Random random = new Random(seed);
+        long clues = 0;
+        long start = System.nanoTime();
+        for (GameMatrix matrix : full) {
+            GameMatrix riddle = inPlace
+                    ? Creator.createRiddle(matrix, random)
+                    : solverPerCell(matrix, random);
+            clues += riddle.getSetCount();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double perSecond = full.length / seconds;
+        if (!quiet) {
+            System.out.printf("%-16s %6d riddles in %6.2f s = %8.1f/s,"
+                    + " avg %.2f clues%n",
+                    name, full.length, seconds, perSecond,
+                    clues / (double) full.length);
+        }
+        return perSecond;
+    }
+
+    /**
+     * The reduction as it was before the {@link RiddleReducer}.
+     * @param fullMatrix a fully set up (solved) and valid sudoku.
+     * @param random the random number generator to use.
+     * @return a maximally cleared sudoku.
+     */
+    private static GameMatrix solverPerCell(final GameMatrix fullMatrix,
+            final Random random) {
+        GameMatrixImpl cur = new GameMatrixImpl();
+        cur.setAll(fullMatrix.getArray());
+
+        int multi = 0;
+        while (multi < RANDOM_CLEAR) {
+            int i = random.nextInt(GameMatrix.SIZE);
+            int j = random.nextInt(GameMatrix.SIZE);
+
+            if (cur.get(j, i) != GameMatrix.UNSET) {
+                if (canClear(cur, j, i)) {
+                    cur.set(j, i, GameMatrix.UNSET);
+                } else {
+                    multi++;
+                }
+            }
+        }
+
+        for (int i = 0; i < GameMatrix.SIZE; i++) {
+            for (int j = 0; j < GameMatrix.SIZE; j++) {
+                if (GameMatrix.UNSET != cur.get(j, i)
+                    && canClear(cur, j, i)) {
+                    cur.set(j, i, GameMatrix.UNSET);
+                }
+            }
+        }
+        return cur;
+    }
+
+    /**
+     * Checks with a new solver whether a cell can be cleared.
+     * @param riddle the riddle to check.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return whether the riddle still has one solution without the cell.
+     */
+    private static boolean canClear(final BitFreeMatrixInterface riddle,
+            final int row,
+            final int column) {
+        int freeMask = riddle.getFreeMask(row, column);
+        if (Integer.bitCount(freeMask) == 0) {
+            return true;
+        }
+
+        byte old = riddle.get(row, column);
+        riddle.set(row, column, GameMatrix.UNSET);
+
+        Solver s = new Solver(riddle);
+        s.setLimit(2);
+        List<GameMatrix> results = s.solve(500);
+
+        riddle.set(row, column, old);
+        return results.size() == 1;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Random;
+
+/**
+ * Measures saving and restoring a search state with
+ * {@link SnapshotStack} against {@link CachedGameMatrixImpl#clone()}.
+ * Every operation saves the state of a half filled matrix, changes
+ * one cell like a branch would and goes back to the saved state.
+ * Run with the number of operations and an optional seed as arguments.
+ * @author Stephan Fuhrmann
+ */
+public final class SnapshotBenchmark {
+
+    /** Rounds run before the measured one to warm up the JIT. */
+    private static final int WARMUP_ROUNDS = 2;
+
+    /** The number of cells cleared in the full matrix. */
+    private static final int CLEARED = 40;
+
+    /** No instances. */
+    private SnapshotBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of operations per round
+     * (default 10 000 000) and the seed (default 1).
+     */
+    public static void main(final String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        CachedGameMatrixImpl matrix = new CachedGameMatrixImpl();
+        matrix.setAll(Creator.createFull(new Random(seed)).getArray());
+        for (int i = 0; i < CLEARED; i++) {
+            matrix.set(i / GameMatrix.SIZE, i % GameMatrix.SIZE,
+                    GameMatrix.UNSET);
+        }
+
+        long check = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            CachedGameMatrixImpl current = matrix;
+            for (int i = 0; i < count; i++) {
+                CachedGameMatrixImpl saved =
+                        (CachedGameMatrixImpl) current.clone();
+                branch(current, i);
+                current = saved;
+                check += current.getSetCount();
+            }
+            long cloneNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            SnapshotStack snapshots = new SnapshotStack(1);
+            for (int i = 0; i < count; i++) {
+                snapshots.push(current);
+                branch(current, i);
+                snapshots.pop(current);
+                check += current.getSetCount();
+            }
+            long stackNanos = System.nanoTime() - start;
+
+            if (round == WARMUP_ROUNDS) {
+                System.out.printf("clone          %6.1f ns/op%n",
+                        cloneNanos / (double) count);
+                System.out.printf("snapshot stack %6.1f ns/op%n",
+                        stackNanos / (double) count);
+            }
+        }
+        // keeps the loops from being optimized away
+        System.out.println("check " + check);
+    }
+
+    /** Sets one of the cleared cells like a search branch.
+     * @param matrix the matrix to change.
+     * @param i the number of the operation.
+     */
+    private static void branch(final CachedGameMatrixImpl matrix,
+            final int i) {
+        int cell = i % CLEARED;
+        int row = cell / GameMatrix.SIZE;
+        int column = cell % GameMatrix.SIZE;
+        int free = matrix.getFreeMask(row, column);
+        if (free != 0) {
+            matrix.set(row, column,
+                    (byte) Integer.numberOfTrailingZeros(free));
+        }
+    }
+}
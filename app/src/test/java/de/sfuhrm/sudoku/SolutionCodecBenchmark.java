@@ -0,0 +1,101 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures encode and decode throughput of {@link SolutionCodec}
+ * on flat arrays, and checks that every grid survives the round trip.
+ * Run with the number of grids and an optional seed as arguments.
+ * @author Stephan Fuhrmann
+ */
+public final class SolutionCodecBenchmark {
+
+    /** Rounds run before the measured one to warm up the JIT. */
+    private static final int WARMUP_ROUNDS = 2;
+
+    /** The number of grids per seed grid of the generator. */
+    private static final int GRIDS_PER_SEED = 1000;
+
+    /** No instances. */
+    private SolutionCodecBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of grids (default 100 000)
+     * and the seed (default 1).
+     */
+    public static void main(final String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        Random random = new Random(seed);
+        byte[] grids = new byte[count * GameMatrix.TOTAL_FIELDS];
+        FullGridGenerator generator = null;
+        for (int i = 0; i < count; i++) {
+            if (i % GRIDS_PER_SEED == 0) {
+                generator = new FullGridGenerator(Creator.createFull(random));
+            }
+            generator.next(random, grids, i * GameMatrix.TOTAL_FIELDS);
+        }
+
+        byte[] encoded = new byte[count * SolutionCodec.ENCODED_BYTES];
+        byte[] decoded = new byte[grids.length];
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                SolutionCodec.encode(grids, i * GameMatrix.TOTAL_FIELDS,
+                        encoded, i * SolutionCodec.ENCODED_BYTES);
+            }
+            long encodeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                SolutionCodec.decode(encoded, i * SolutionCodec.ENCODED_BYTES,
+                        decoded, i * GameMatrix.TOTAL_FIELDS);
+            }
+            long decodeNanos = System.nanoTime() - start;
+
+            if (!Arrays.equals(grids, decoded)) {
+                throw new IllegalStateException("Round trip failed");
+            }
+            if (round == WARMUP_ROUNDS) {
+                print("encode", encodeNanos, count);
+                print("decode", decodeNanos, count);
+                System.out.printf("%d bytes per grid instead of %d%n",
+                        SolutionCodec.ENCODED_BYTES, GameMatrix.TOTAL_FIELDS);
+            }
+        }
+    }
+
+    /** Prints the result of one loop.
+     * @param name the name of the loop.
+     * @param nanos the time of the loop.
+     * @param count the number of grids.
+     */
+    private static void print(final String name, final long nanos,
+            final int count) {
+        System.out.printf("%s %7.1f ns/grid = %5.2f M grids/s%n",
+                name, nanos / (double) count, count * 1e3 / nanos);
+    }
+}
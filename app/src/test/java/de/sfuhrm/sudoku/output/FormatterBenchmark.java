@@ -0,0 +1,139 @@
+/*
+Sudoku - a fast Java Sudoku game creation library.
+Copyright (C) 2017-2018  Stephan Fuhrmann
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Library General Public
+License as published by the Free Software Foundation; either
+version 2 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Library General Public License for more details.
+
+You should have received a copy of the GNU Library General Public
+License along with this library; if not, write to the
+Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+Boston, MA  02110-1301, USA.
+*/
+package de.sfuhrm.sudoku.output;
+
+import de.sfuhrm.sudoku.Creator;
+import de.sfuhrm.sudoku.GameMatrix;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures time and allocated bytes per matrix of
+ * {@link GameMatrixFormatter#format(GameMatrix)} against
+ * {@link GameMatrixFormatter#formatTo(GameMatrix, Appendable)}
+ * into a reused {@link StringBuilder}.
+ * Allocation is read from the HotSpot thread bean and reported
+ * as -1 on other JVMs.
+ * Run with the number of matrices and an optional seed as arguments.
+ * @author Stephan Fuhrmann
+ */
+public final class FormatterBenchmark {
+
+    /** Rounds run before the measured one to warm up the JIT. */
+    private static final int WARMUP_ROUNDS = 2;
+
+    /** The number of different matrices formatted in turn. */
+    private static final int MATRICES = 64;
+
+    /** The capacity of the reused target, bigger than any matrix. */
+    private static final int TARGET_CAPACITY = 4096;
+
+    /** No instances. */
+    private FormatterBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args the number of matrices per formatter and round
+     * (default 1 000 000) and the seed (default 1).
+     * @throws IOException never, the target is a StringBuilder.
+     */
+    public static void main(final String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        Random random = new Random(seed);
+        GameMatrix[] matrices = new GameMatrix[MATRICES];
+        for (int i = 0; i < MATRICES; i += 2) {
+            matrices[i] = Creator.createFull(random);
+            matrices[i + 1] = Creator.createRiddle(matrices[i], random);
+        }
+
+        GameMatrixFormatter[] formatters = {
+            new PlainTextFormatter(),
+            new MarkdownTableFormatter(),
+            new LatexTableFormatter(),
+            new JsonArrayFormatter()
+        };
+
+        long check = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            for (GameMatrixFormatter formatter : formatters) {
+                long startBytes = allocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    check += formatter.format(
+                            matrices[i % MATRICES]).length();
+                }
+                long formatNanos = System.nanoTime() - start;
+                long formatBytes = allocatedBytes() - startBytes;
+
+                StringBuilder target = new StringBuilder(TARGET_CAPACITY);
+                startBytes = allocatedBytes();
+                start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    target.setLength(0);
+                    formatter.formatTo(matrices[i % MATRICES], target);
+                    check += target.length();
+                }
+                long formatToNanos = System.nanoTime() - start;
+                long formatToBytes = allocatedBytes() - startBytes;
+
+                if (round == WARMUP_ROUNDS) {
+                    String name = formatter.getClass().getSimpleName();
+                    print(name + ".format", formatNanos, formatBytes,
+                            count);
+                    print(name + ".formatTo", formatToNanos,
+                            formatToBytes, count);
+                }
+            }
+        }
+        // keeps the loops from being optimized away
+        System.out.println("check " + check);
+    }
+
+    /** Prints the result of one loop.
+     * @param name the name of the loop.
+     * @param nanos the time of the loop.
+     * @param bytes the bytes allocated by the loop.
+     * @param count the number of matrices formatted.
+     */
+    private static void print(final String name, final long nanos,
+            final long bytes, final int count) {
+        System.out.printf("%-34s %7.1f ns/matrix %8.1f bytes/matrix%n",
+                name, nanos / (double) count,
+                bytes < 0 ? -1 : bytes / (double) count);
+    }
+
+    /** Get the bytes allocated by the current thread so far.
+     * @return the allocated bytes, or a negative number if the
+     * JVM can not tell.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean =
+                ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}